@@ -0,0 +1,69 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AstBenchmark Class
+ *
+ * Compares the object tree with FlatAst on the same program. The parse benchmarks
+ * build each form from source; run with the GC profiler (BenchmarkRunner adds it)
+ * and gc.alloc.rate.norm gives the bytes allocated per parse, which is the memory
+ * footprint of the AST plus the scanner's garbage. The getCode benchmarks walk an
+ * already built AST and generate the same pseudo assembly from both forms.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class AstBenchmark {
+
+    @Param({"1000", "10000"})
+    int statements;
+
+    @Param({"FLAT", "NESTED", "CHAIN"})
+    BenchmarkPrograms.Shape shape;
+
+    String source;
+    AbstractSyntaxTree tree;
+    FlatAst flat;
+
+    @Setup
+    public void setup() {
+        source = BenchmarkPrograms.program(shape, statements);
+        MyParser parser = new MyParser();
+        if (!parser.parse(source)) {
+            throw new IllegalStateException("Benchmark program failed to parse");
+        }
+        tree = parser.getAbstractSyntaxTree();
+        flat = new FlatParser().parse(source);
+        if (flat == null || !flat.getCode().equals(tree.getCode())) {
+            throw new IllegalStateException("FlatAst does not match the tree");
+        }
+    }
+
+    @Benchmark
+    public AbstractSyntaxTree parseTree() {
+        MyParser parser = new MyParser();
+        parser.parse(source);
+        return parser.getAbstractSyntaxTree();
+    }
+
+    @Benchmark
+    public FlatAst parseFlat() {
+        return new FlatParser().parse(source);
+    }
+
+    @Benchmark
+    public String getCodeTree() {
+        return tree.getCode();
+    }
+
+    @Benchmark
+    public String getCodeFlat() {
+        return flat.getCode();
+    }
+}
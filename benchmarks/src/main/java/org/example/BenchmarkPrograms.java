@@ -0,0 +1,53 @@
+package org.example;
+
+/**
+ * BenchmarkPrograms Class
+ *
+ * Builds the benchmark inputs with ProgramGenerator, using a fixed seed so every
+ * run measures the same programs.
+ */
+public class BenchmarkPrograms {
+    static final long SEED = 345;
+    static final int VARIABLES = 10;
+    static final int NESTING_DEPTH = 50;   // Deepest if in the nested shape
+    static final int CHAIN_TERMS = 100;    // + terms per calc in the chain shape
+
+    /**
+     * The shape of the statements in a benchmark program.
+     */
+    public enum Shape {
+        FLAT,    // set, calc, print and single level if statements
+        NESTED,  // mostly ifs, nested up to NESTING_DEPTH deep
+        CHAIN    // calc statements with CHAIN_TERMS terms each
+    }
+
+    /**
+     * Builds a program of the given number of statements, after the initial sets.
+     * @param shape
+     * @param statements
+     * @return The program source
+     */
+    public static String program(Shape shape, int statements) {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setSeed(SEED);
+        generator.setDeclarations(VARIABLES);
+        generator.setStatements(statements);
+        switch (shape) {
+            case FLAT:
+                generator.setMaxDepth(1);
+                generator.setChainLength(3);
+                break;
+            case NESTED:
+                generator.setMaxDepth(NESTING_DEPTH);
+                generator.setChainLength(3);
+                generator.setMix(1, 1, 1, 6);
+                break;
+            default:
+                generator.setMaxDepth(0);
+                generator.setChainLength(CHAIN_TERMS);
+                generator.setMix(0, 1, 0, 0);
+                break;
+        }
+        return generator.generate();
+    }
+}
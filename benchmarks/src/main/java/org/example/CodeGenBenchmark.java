@@ -0,0 +1,51 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CodeGenBenchmark Class
+ *
+ * Measures AbstractSyntaxTree.getCode on an already parsed program. The
+ * instructions counter gives pseudo assembly instructions/sec.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CodeGenBenchmark {
+
+    @Param({"1000", "10000"})
+    int statements;
+
+    @Param({"FLAT", "NESTED", "CHAIN"})
+    BenchmarkPrograms.Shape shape;
+
+    AbstractSyntaxTree ast;
+    int instructionCount;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counts {
+        public long instructions;
+    }
+
+    @Setup
+    public void setup() {
+        MyParser parser = new MyParser();
+        if (!parser.parse(BenchmarkPrograms.program(shape, statements))) {
+            throw new IllegalStateException("Benchmark program failed to parse");
+        }
+        ast = parser.getAbstractSyntaxTree();
+        instructionCount = PseudoProgram.parse(ast.getCode()).code.size();
+    }
+
+    @Benchmark
+    public String getCode(Counts counts) {
+        counts.instructions += instructionCount;
+        return ast.getCode();
+    }
+}
@@ -0,0 +1,113 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EmitterBenchmark Class
+ *
+ * Compares the ways code generation can hand out its code on the same parsed
+ * program. linesJoined is the old path: a String per instruction, kept in a list and
+ * joined at the end. The others write into a CodeEmitter: a new StringBuilder
+ * (getCode()), a reused StringBuilder, a Writer and UTF-8 bytes. Run with the GC
+ * profiler (BenchmarkRunner adds it) and compare gc.alloc.rate.norm, the bytes
+ * allocated per program.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class EmitterBenchmark {
+
+    @Param({"10000", "100000"})
+    int statements;
+
+    @Param({"FLAT", "CHAIN"})
+    BenchmarkPrograms.Shape shape;
+
+    AbstractSyntaxTree ast;
+    StringBuilder reused;
+    CodeEmitter.Bytes bytes;
+
+    // Builds every line as a String and joins them, as code generation used to
+    static class LinesEmitter extends CodeEmitter {
+        final List<String> lines = new ArrayList<>();
+        private final StringBuilder line = new StringBuilder();
+
+        @Override
+        protected void write(char c) {
+            if (c == '\n') {
+                lines.add(line.toString());
+                line.setLength(0);
+            } else {
+                line.append(c);
+            }
+        }
+
+        @Override
+        protected void write(String text) {
+            line.append(text);
+        }
+
+        String join() {
+            lines.add(line.toString());
+            return String.join("\n", lines);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        MyParser parser = new MyParser();
+        if (!parser.parse(BenchmarkPrograms.program(shape, statements))) {
+            throw new IllegalStateException("Benchmark program failed to parse");
+        }
+        ast = parser.getAbstractSyntaxTree();
+        reused = new StringBuilder();
+        bytes = new CodeEmitter.Bytes();
+        LinesEmitter lines = new LinesEmitter();
+        ast.generateCode(lines);
+        if (!lines.join().equals(ast.getCode())) {
+            throw new IllegalStateException("Emitters disagree");
+        }
+    }
+
+    @Benchmark
+    public String linesJoined() {
+        LinesEmitter lines = new LinesEmitter();
+        ast.generateCode(lines);
+        return lines.join();
+    }
+
+    @Benchmark
+    public String newStringBuilder() {
+        return ast.getCode();
+    }
+
+    @Benchmark
+    public int reusedStringBuilder() {
+        reused.setLength(0);
+        ast.generateCode(CodeEmitter.of(reused));
+        return reused.length();
+    }
+
+    @Benchmark
+    public Writer writer() {
+        Writer out = Writer.nullWriter();
+        ast.generateCode(CodeEmitter.of(out));
+        return out;
+    }
+
+    @Benchmark
+    public int utf8Bytes() {
+        CodeEmitter.Bytes out = new CodeEmitter.Bytes(bytes.size() + 16);
+        ast.generateCode(out);
+        bytes = out;
+        return out.size();
+    }
+}
@@ -0,0 +1,64 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * InterpreterBenchmark Class
+ *
+ * Measures PseudoInterpreter on register allocated code: decoding the pseudo
+ * assembly text, and running the decoded program with its output dropped. The
+ * instructions counter of run gives instructions/sec.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+
+    @Param({"1000", "10000"})
+    int statements;
+
+    @Param({"FLAT", "NESTED", "CHAIN"})
+    BenchmarkPrograms.Shape shape;
+
+    String code;
+    PseudoInterpreter interpreter;
+    PrintStream out;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counts {
+        public long instructions;
+    }
+
+    @Setup
+    public void setup() {
+        MyParser parser = new MyParser();
+        if (!parser.parse(BenchmarkPrograms.program(shape, statements))) {
+            throw new IllegalStateException("Benchmark program failed to parse");
+        }
+        PseudoProgram program = PseudoProgram.parse(parser.getAbstractSyntaxTree().getCode());
+        new RegisterAllocator(32).allocate(program);
+        code = program.toString();
+        interpreter = PseudoInterpreter.decode(code);
+        out = new PrintStream(OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public PseudoInterpreter decode() {
+        return PseudoInterpreter.decode(code);
+    }
+
+    @Benchmark
+    public long run(Counts counts) {
+        long executed = interpreter.run(out);
+        counts.instructions += executed;
+        return executed;
+    }
+}
@@ -0,0 +1,75 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.PushbackReader;
+import java.io.StringReader;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KeywordBenchmark Class
+ *
+ * Measures keyword recognition on identifier heavy input, a whitespace separated
+ * mix of keywords in any case and identifiers that start like keywords, with
+ * MyScanner in reader mode and in char array mode. The tokens counter gives
+ * tokens/sec.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class KeywordBenchmark {
+    private static final String[] WORDS = {
+            "declare", "int", "print", "set", "if", "then", "endif", "calc",
+            "Declare", "PRINT", "counter", "index", "total", "setting", "iffy", "thenceforth",
+            "x", "y", "value", "calculate", "intValue", "printer", "endifx", "sum"
+    };
+
+    @Param({"100000"})
+    int words;
+
+    String source;
+    char[] chars;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counts {
+        public long tokens;
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(BenchmarkPrograms.SEED);
+        StringBuilder sb = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            sb.append(WORDS[random.nextInt(WORDS.length)]).append(i % 10 == 9 ? '\n' : ' ');
+        }
+        source = sb.toString();
+        chars = source.toCharArray();
+    }
+
+    @Benchmark
+    public int scanReader(Counts counts) throws Exception {
+        return count(new MyScanner(new PushbackReader(new StringReader(source))), counts);
+    }
+
+    @Benchmark
+    public int scanChars(Counts counts) throws Exception {
+        return count(new MyScanner(chars, 0, chars.length), counts);
+    }
+
+    private int count(MyScanner scanner, Counts counts) throws Exception {
+        int tokens = 0;
+        while (scanner.scan() != MyScanner.TOKEN.SCANEOF) {
+            tokens++;
+        }
+        if (tokens != words) {
+            throw new IllegalStateException("Scanned " + tokens + " tokens, expected " + words);
+        }
+        counts.tokens += tokens;
+        return tokens;
+    }
+}
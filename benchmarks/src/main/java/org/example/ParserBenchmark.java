@@ -0,0 +1,69 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ParserBenchmark Class
+ *
+ * Measures MyParser.parse from source to AST with diagnostics off, and with
+ * tracing on (written to a discarding stream) for comparison. The statements
+ * counter gives statements/sec.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({"1000", "10000"})
+    int statements;
+
+    @Param({"FLAT", "NESTED", "CHAIN"})
+    BenchmarkPrograms.Shape shape;
+
+    String source;
+    int statementCount;  // Statements in source, counting every nested one
+    Diagnostics trace;   // Traces every matched token to a stream that drops it
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counts {
+        public long statements;
+    }
+
+    @Setup
+    public void setup() {
+        source = BenchmarkPrograms.program(shape, statements);
+        trace = new ConsoleDiagnostics(Diagnostics.Level.TRACE, new PrintStream(OutputStream.nullOutputStream()));
+        statementCount = 0;
+        for (String line : source.split("\n")) {
+            if (!line.startsWith("declare") && !line.equals("endif")) {
+                statementCount++;
+            }
+        }
+    }
+
+    @Benchmark
+    public AbstractSyntaxTree parse(Counts counts) {
+        return parse(new MyParser(), counts);
+    }
+
+    @Benchmark
+    public AbstractSyntaxTree parseTracing(Counts counts) {
+        return parse(new MyParser(trace), counts);
+    }
+
+    private AbstractSyntaxTree parse(MyParser parser, Counts counts) {
+        if (!parser.parse(source)) {
+            throw new IllegalStateException("Benchmark program failed to parse");
+        }
+        counts.statements += statementCount;
+        return parser.getAbstractSyntaxTree();
+    }
+}
@@ -0,0 +1,50 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ScannerBenchmark Class
+ *
+ * Measures MyScanner.scan over a whole program held in a char[]. The tokens
+ * counter gives tokens/sec.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+
+    @Param({"1000", "10000"})
+    int statements;
+
+    @Param({"FLAT", "NESTED", "CHAIN"})
+    BenchmarkPrograms.Shape shape;
+
+    char[] source;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counts {
+        public long tokens;
+    }
+
+    @Setup
+    public void setup() {
+        source = BenchmarkPrograms.program(shape, statements).toCharArray();
+    }
+
+    @Benchmark
+    public int scan(Counts counts) throws Exception {
+        MyScanner scanner = new MyScanner(source, 0, source.length);
+        int tokens = 0;
+        while (scanner.scan() != MyScanner.TOKEN.SCANEOF) {
+            tokens++;
+        }
+        counts.tokens += tokens;
+        return tokens;
+    }
+}
@@ -1,6 +1,14 @@
 package org.example;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +21,10 @@ public class AbstractSyntaxTree {
 
     // Base class for all nodes
     public abstract class NodeBase {
+        protected NodeBase() {
+            nodeCount++;
+        }
+
         public abstract void display();
 
         public abstract String generateCode();
@@ -20,7 +32,13 @@ public class AbstractSyntaxTree {
 
     // Abstract class for expressions
     public abstract class NodeExpr extends NodeBase {
+        // Generates the expression and returns the number of the register holding it
+        abstract int generateRegister();
 
+        @Override
+        public String generateCode() {
+            return "ri" + generateRegister();
+        }
     }
 
     // Abstract class for statements
@@ -30,10 +48,16 @@ public class AbstractSyntaxTree {
 
     // Class for ID
     public class NodeId extends NodeExpr {
-        String name;
+        final int symbol;  // ID in the tree's SymbolInterner
+        final String name;  // The interned name, shared by every NodeId of the variable
 
         public NodeId(String name) {
-            this.name = name;
+            this(symbols.intern(name));
+        }
+
+        public NodeId(int symbol) {
+            this.symbol = symbol;
+            this.name = symbols.name(symbol);
         }
 
         @Override
@@ -42,11 +66,14 @@ public class AbstractSyntaxTree {
         }
 
         @Override
-        public String generateCode() {
-            if (variableRegisterMap.containsKey(name)) {
-                return variableRegisterMap.get(name);
+        int generateRegister() {
+            int register = locations.registerOf(symbol);
+            if (register == 0) { // No register holds it in this block, so load it
+                register = nextIntRegister++;
+                emitter.instruction("loadintvar").register(register).operand(name);
+                locations.set(symbol, register);
             }
-            return ""; // Variable is not in a register yet
+            return register;
         }
     }
 
@@ -64,9 +91,9 @@ public class AbstractSyntaxTree {
         }
 
         @Override
-        public String generateCode() {
-            String register = "ri" + nextIntRegister++;
-            generatedCode.add("loadintliteral " + register + ", " + value);
+        int generateRegister() {
+            int register = nextIntRegister++;
+            emitter.instruction("loadintliteral").register(register).operand(value);
             return register;
         }
     }
@@ -83,20 +110,58 @@ public class AbstractSyntaxTree {
 
         @Override
         public void display() {
-            System.out.println("AST sum");
-            System.out.print("LHS: ");
-            left.display();
-            System.out.print("RHS: ");
-            right.display();
+            // Walks the sum with a work stack of nodes and labels still to print
+            Deque<Object> work = new ArrayDeque<>();
+            work.push(this);
+            while (!work.isEmpty()) {
+                Object item = work.pop();
+                if (item instanceof NodePlus) {
+                    NodePlus sum = (NodePlus) item;
+                    System.out.println("AST sum");
+                    work.push(sum.right);
+                    work.push("RHS: ");
+                    work.push(sum.left);
+                    work.push("LHS: ");
+                } else if (item instanceof String) {
+                    System.out.print(item);
+                } else {
+                    ((NodeExpr) item).display();
+                }
+            }
         }
 
         @Override
-        public String generateCode() {
-            String leftRegister = left.generateCode();
-            String rightRegister = right.generateCode();
-            String resultRegister = "ri" + nextIntRegister++;
-            generatedCode.add("add " + leftRegister + ", " + rightRegister + ", " + resultRegister);
-            return resultRegister;
+        int generateRegister() {
+            if (valueNumbering != null) {
+                return generateNumberedSum(this);
+            }
+            // Same order as generating left, then right, then the add, but with a work
+            // stack instead of recursion; ADD pops the two registers on top of registers
+            Deque<Object> work = new ArrayDeque<>();
+            int[] registers = new int[8];
+            int count = 0;
+            work.push(this);
+            while (!work.isEmpty()) {
+                Object item = work.pop();
+                if (item == ADD) {
+                    int rightRegister = registers[--count];
+                    int leftRegister = registers[--count];
+                    int resultRegister = nextIntRegister++;
+                    emitter.instruction("add").register(leftRegister).register(rightRegister).register(resultRegister);
+                    registers[count++] = resultRegister;
+                } else if (item instanceof NodePlus) {
+                    NodePlus sum = (NodePlus) item;
+                    work.push(ADD);
+                    work.push(sum.right);
+                    work.push(sum.left);
+                } else {
+                    if (count == registers.length) {
+                        registers = Arrays.copyOf(registers, count * 2);
+                    }
+                    registers[count++] = ((NodeExpr) item).generateRegister();
+                }
+            }
+            return registers[0];
         }
     }
 
@@ -117,8 +182,8 @@ public class AbstractSyntaxTree {
 
         @Override
         public String generateCode() {
-            String idRegister = id.generateCode();
-            generatedCode.add("printi " + idRegister);
+            int idRegister = id.generateRegister(); // May load it first
+            emitter.instruction("printi").register(idRegister);
             return "";
         }
     }
@@ -143,9 +208,12 @@ public class AbstractSyntaxTree {
 
         @Override
         public String generateCode() {
-            String literalRegister = literal.generateCode();
-            generatedCode.add("storeintvar " + literalRegister + ", " + id.name);
-            variableRegisterMap.put(id.name, literalRegister);
+            int literalRegister = literal.generateRegister();
+            emitter.instruction("storeintvar").register(literalRegister).operand(id.name);
+            locations.set(id.symbol, literalRegister);
+            if (valueNumbering != null) {
+                valueNumbering.invalidate(id.name); // Sums of the old value are stale
+            }
             return "";
         }
     }
@@ -170,9 +238,12 @@ public class AbstractSyntaxTree {
 
         @Override
         public String generateCode() {
-            String exprRegister = expr.generateCode();
-            generatedCode.add("storeintvar " + exprRegister + ", " + id.name);
-            variableRegisterMap.put(id.name, exprRegister);
+            int exprRegister = expr.generateRegister();
+            emitter.instruction("storeintvar").register(exprRegister).operand(id.name);
+            locations.set(id.symbol, exprRegister);
+            if (valueNumbering != null) {
+                valueNumbering.invalidate(id.name); // Sums of the old value are stale
+            }
             return "";
         }
     }
@@ -191,16 +262,12 @@ public class AbstractSyntaxTree {
 
         @Override
         public void display() {
-            for (NodeStmt stmt : stmts) {
-                stmt.display();
-            }
+            displayStmts(stmts);
         }
 
         @Override
         public String generateCode() {
-            for (NodeStmt stmt : stmts) {
-                stmt.generateCode(); // Generate code for each statement
-            }
+            generateStmts(stmts); // Generate code for each statement
             return "";
         }
     }
@@ -219,26 +286,37 @@ public class AbstractSyntaxTree {
 
         @Override
         public void display() {
+            displayStmts(Collections.singletonList(this));
+        }
+
+        // Prints everything up to the block
+        void displayHead() {
             System.out.println("AST if");
             System.out.print("LHS: ");
             left.display();
             System.out.print("RHS: ");
             right.display();
-            stmts.display();
-            System.out.println("AST endif");
-            System.out.println();
         }
 
         @Override
         public String generateCode() {
-            String leftRegister = left.generateCode();
-            String rightRegister = right.generateCode();
-            String label = "label" + (generatedCode.size() + 1); // Generate label without colon first for syntax, add colon later
-            generatedCode.add("bne " + leftRegister + ", " + rightRegister + ", " + label);
-            stmts.generateCode();
-            generatedCode.add(":" + label);
+            generateStmts(Collections.singletonList(this));
             return "";
         }
+
+        // Generates the branch around the block and returns the number of the label it jumps to
+        int generateHead() {
+            int leftRegister = left.generateRegister();
+            int rightRegister = right.generateRegister();
+            int label = emitter.getLineCount() + 1; // Labels are named after the line of the branch
+            emitter.instruction("bne").register(leftRegister).register(rightRegister).labelOperand(label);
+            locations.branch(); // The block is only entered from the branch
+            if (valueNumbering != null) {
+                valueNumbering.clear(); // The block starts a new basic block
+            }
+            return label;
+        }
+
     }
 
     // Class for multiple declarations
@@ -265,7 +343,7 @@ public class AbstractSyntaxTree {
         @Override
         public String generateCode() {
             for (NodeId decl : decls) {
-                generatedCode.add("var int " + decl.name); // Generate code for each decl
+                emitter.instruction("var int").operand(decl.name); // Generate code for each decl
             }
             return "";
         }
@@ -290,9 +368,9 @@ public class AbstractSyntaxTree {
 
         @Override
         public String generateCode() {
-            generatedCode.add(".data");
+            emitter.instruction(".data");
             decls.generateCode();
-            generatedCode.add("\n.code");
+            emitter.instruction("\n.code");  // One line in the count, so labels match the reference numbering
             stmts.generateCode();
             return "";
         }
@@ -301,11 +379,38 @@ public class AbstractSyntaxTree {
     // AbstractSyntaxTree member variable to hold the root node
     private NodeProgram root;
 
-    // Member variable to hold generated code lines
-    private List<String> generatedCode = new ArrayList<>();
+    // Where generated code goes; null outside of code generation
+    private CodeEmitter emitter;
+
+    // Length of the code getCode() returned last time
+    private int lastCodeLength;
 
     private int nextIntRegister = 1; // ri1, ri2, etc.
-    private Map<String, String> variableRegisterMap = new HashMap<>();
+
+    // Nodes created in this tree, including any made by passes such as ConstantFolder
+    private int nodeCount;
+
+    // Variable names, each NodeId refers to one by ID
+    private final SymbolInterner symbols;
+
+    // Register holding each variable in the block being generated
+    private final VariableLocations locations = new VariableLocations();
+
+    public AbstractSyntaxTree() {
+        this(new SymbolInterner());
+    }
+
+    /**
+     * Creates a tree whose variables are interned in symbols, e.g. the interner the
+     * scanner already uses, so the parser can make each NodeId from its ID.
+     * @param symbols
+     */
+    public AbstractSyntaxTree(SymbolInterner symbols) {
+        this.symbols = symbols;
+    }
+
+    // Local value numbering for sums, null when turned off
+    private ValueNumbering valueNumbering;
 
     // Getter and setter for the root NodeProgram
     public NodeProgram getRoot() {
@@ -316,6 +421,171 @@ public class AbstractSyntaxTree {
         this.root = root;
     }
 
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public SymbolInterner getSymbols() {
+        return symbols;
+    }
+
+    // Turns local value numbering of NodePlus trees on or off for the next getCode()
+    public void setValueNumbering(boolean enabled) {
+        valueNumbering = enabled ? new ValueNumbering() : null;
+    }
+
+    // Number of sums and literals the last getCode() took from a register instead of computing again
+    public int getValueNumberingReuses() {
+        return valueNumbering != null ? valueNumbering.getReused() : 0;
+    }
+
+    // Generates a sum with value numbering: loads each literal once per block, starts
+    // from the biggest sum of these terms already in a register, then adds the rest
+    private int generateNumberedSum(NodePlus sum) {
+        List<String> terms = new ArrayList<>();
+        Map<String, Integer> termRegisters = new HashMap<>();
+        for (NodeExpr leaf : sumTerms(sum)) {
+            String term;
+            int register;
+            if (leaf instanceof NodeIntLiteral) {
+                int value = ((NodeIntLiteral) leaf).value;
+                term = ValueNumbering.literalTerm(value);
+                register = valueNumbering.lookupLiteral(value);
+                if (register == 0) {
+                    register = leaf.generateRegister();
+                    valueNumbering.recordLiteral(value, register);
+                }
+            } else {
+                term = ValueNumbering.variableTerm(((NodeId) leaf).name);
+                register = leaf.generateRegister();
+            }
+            terms.add(term);
+            termRegisters.put(term, register);
+        }
+
+        List<String> sorted = new ArrayList<>(terms);
+        Collections.sort(sorted);
+        List<String> remaining = new ArrayList<>(terms);
+        List<String> sumTerms = new ArrayList<>();
+        int sumRegister;
+        ValueNumbering.Entry known = valueNumbering.largestContained(sorted);
+        if (known != null) {
+            sumTerms.addAll(known.terms);
+            sumRegister = known.register;
+            for (String term : known.terms) {
+                remaining.remove(term);
+            }
+        } else {
+            String first = remaining.remove(0);
+            sumTerms.add(first);
+            sumRegister = termRegisters.get(first);
+        }
+
+        for (String term : remaining) {
+            sumTerms.add(term);
+            Collections.sort(sumTerms);
+            int register = valueNumbering.lookup(sumTerms);
+            if (register == 0) {
+                register = nextIntRegister++;
+                emitter.instruction("add").register(sumRegister).register(termRegisters.get(term)).register(register);
+                valueNumbering.record(sumTerms, register);
+            }
+            sumRegister = register;
+        }
+        return sumRegister;
+    }
+
+    // Returns the leaves of a sum from left to right, e.g. [x, y, 5] for x + y + 5
+    static List<NodeExpr> sumTerms(NodeExpr expr) {
+        List<NodeExpr> terms = new ArrayList<>();
+        Deque<NodeExpr> work = new ArrayDeque<>();
+        work.push(expr);
+        while (!work.isEmpty()) {
+            NodeExpr next = work.pop();
+            if (next instanceof NodePlus) {
+                work.push(((NodePlus) next).right);  // Pushed first so the left side comes out first
+                work.push(((NodePlus) next).left);
+            } else {
+                terms.add(next);
+            }
+        }
+        return terms;
+    }
+
+    // Marks the point in NodePlus.generateRegister where both operands are in registers
+    private static final Object ADD = new Object();
+
+    // An if whose block has been walked, waiting for its end to be generated or printed
+    private static class EndIf {
+        final int label;
+
+        EndIf(int label) {
+            this.label = label;
+        }
+    }
+
+    // Generates code for statements and the blocks of the ifs among them, using a
+    // work stack instead of recursion so deep nesting cannot overflow the thread stack
+    private void generateStmts(List<NodeStmt> stmts) {
+        Deque<Object> work = new ArrayDeque<>();
+        pushReversed(work, stmts);
+        while (!work.isEmpty()) {
+            Object item = work.pop();
+            if (item instanceof EndIf) {
+                emitter.label(((EndIf) item).label);
+                locations.join(); // Reached from the end of the block and from the branch around it
+                if (valueNumbering != null) {
+                    valueNumbering.clear(); // The join point after the block starts a new one too
+                }
+            } else if (item instanceof NodeIf) {
+                NodeIf nodeIf = (NodeIf) item;
+                work.push(new EndIf(nodeIf.generateHead()));
+                pushReversed(work, nodeIf.stmts.stmts);
+            } else if (item instanceof NodeStmts) {
+                pushReversed(work, ((NodeStmts) item).stmts);
+            } else {
+                ((NodeStmt) item).generateCode();
+            }
+        }
+    }
+
+    // Same walk as generateStmts, printing instead
+    private void displayStmts(List<NodeStmt> stmts) {
+        Deque<Object> work = new ArrayDeque<>();
+        pushReversed(work, stmts);
+        while (!work.isEmpty()) {
+            Object item = work.pop();
+            if (item instanceof EndIf) {
+                System.out.println("AST endif");
+                System.out.println();
+            } else if (item instanceof NodeIf) {
+                NodeIf nodeIf = (NodeIf) item;
+                nodeIf.displayHead();
+                work.push(new EndIf(0));
+                pushReversed(work, nodeIf.stmts.stmts);
+            } else if (item instanceof NodeStmts) {
+                pushReversed(work, ((NodeStmts) item).stmts);
+            } else {
+                ((NodeStmt) item).display();
+            }
+        }
+    }
+
+    private static void pushReversed(Deque<Object> work, List<NodeStmt> stmts) {
+        for (int i = stmts.size() - 1; i >= 0; i--) {
+            work.push(stmts.get(i));
+        }
+    }
+
+    // Builds a right-leaning sum of the terms, the same shape the parser produces
+    NodeExpr sumOf(List<NodeExpr> terms) {
+        NodeExpr sum = terms.get(terms.size() - 1);
+        for (int i = terms.size() - 2; i >= 0; i--) {
+            sum = new NodePlus(terms.get(i), sum);
+        }
+        return sum;
+    }
+
     // Display the AST starting from the root
     public void display() {
         if (root != null) {
@@ -324,10 +594,133 @@ public class AbstractSyntaxTree {
     }
     // Method to generate the full code from the AST
     public String getCode() {
-        generatedCode.clear(); // Clear any previously generated code
-        if (root != null) {
-            root.generateCode(); // Start code generation from the root
+        StringBuilder code = new StringBuilder(lastCodeLength + 16);  // Sized for the last result, in case it is called again
+        generateCode(CodeEmitter.of(code));
+        lastCodeLength = code.length();
+        return code.toString();
+    }
+
+    /**
+     * Generates the full code from the AST into out, the same text getCode() returns.
+     * @param out
+     */
+    public void generateCode(CodeEmitter out) {
+        emitter = out;
+        nextIntRegister = 1;  // Same registers every time, so the code can be generated again
+        clearRegisters();
+        if (valueNumbering != null) {
+            valueNumbering = new ValueNumbering();  // Sums and reuses from an earlier run are not in these registers
+        }
+        try {
+            if (root != null) {
+                root.generateCode(); // Start code generation from the root
+            }
+        } finally {
+            emitter = null;
+        }
+    }
+
+    // Streaming code generation, used when the parser emits each top-level statement as soon as it is parsed
+
+    // Emits the .data section for the declarations and starts the .code section
+    void emitHeader(NodeDecls decls, Writer out) throws IOException {
+        emitter = CodeEmitter.of(out);  // Kept for the statements that follow
+        try {
+            emitter.instruction(".data");
+            decls.generateCode();
+            emitter.instruction("\n.code");
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Emits the code for one top-level statement, after which the statement can be dropped
+    void emitStmt(NodeStmt stmt) throws IOException {
+        try {
+            stmt.generateCode();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Incremental code generation, used by IncrementalCompiler to generate top-level
+    // statements one at a time and keep the code of the ones that did not change
+
+    // Generates the .data section and the start of .code into out, and starts again from ri1
+    void generateHeader(NodeDecls decls, CodeEmitter out) {
+        emitter = out;
+        nextIntRegister = 1;
+        clearRegisters();
+        valueNumbering = null;
+        try {
+            emitter.instruction(".data");
+            decls.generateCode();
+            emitter.instruction("\n.code");
+        } finally {
+            emitter = null;
+        }
+    }
+
+    // Generates one top-level statement into out, using registers from nextRegister on.
+    // out must count the lines before the statement, for its labels. Uses and updates
+    // getVariableRegisters().
+    void generateStmt(NodeStmt stmt, CodeEmitter out, int nextRegister) {
+        emitter = out;
+        nextIntRegister = nextRegister;
+        try {
+            stmt.generateCode();
+        } finally {
+            emitter = null;
+        }
+    }
+
+    int getNextIntRegister() {
+        return nextIntRegister;
+    }
+
+    // The register a variable is in at this point of code generation, 0 for none
+    int registerOf(int symbol) {
+        return locations.registerOf(symbol);
+    }
+
+    void setRegister(int symbol, int register) {
+        locations.set(symbol, register);
+    }
+
+    // Forgets every register, for generating from the start again
+    void clearRegisters() {
+        locations.clear();
+    }
+
+    // Returns the symbol ID of every variable a statement reads or writes, including inside if blocks
+    static int[] variablesOf(NodeStmt stmt) {
+        BitSet variables = new BitSet();
+        Deque<NodeStmt> work = new ArrayDeque<>();
+        work.push(stmt);
+        while (!work.isEmpty()) {
+            NodeStmt next = work.pop();
+            if (next instanceof NodeIf) {
+                NodeIf nodeIf = (NodeIf) next;
+                variables.set(nodeIf.left.symbol);
+                variables.set(nodeIf.right.symbol);
+                work.push(nodeIf.stmts);
+            } else if (next instanceof NodeStmts) {
+                for (NodeStmt inner : ((NodeStmts) next).stmts) {
+                    work.push(inner);
+                }
+            } else if (next instanceof NodePrint) {
+                variables.set(((NodePrint) next).id.symbol);
+            } else if (next instanceof NodeSet) {
+                variables.set(((NodeSet) next).id.symbol);
+            } else if (next instanceof NodeCalc) {
+                variables.set(((NodeCalc) next).id.symbol);
+                for (NodeExpr term : sumTerms(((NodeCalc) next).expr)) {
+                    if (term instanceof NodeId) {
+                        variables.set(((NodeId) term).symbol);
+                    }
+                }
+            }
         }
-        return String.join("\n", generatedCode); // Concatenate all lines
+        return variables.stream().toArray();
     }
 }
@@ -0,0 +1,205 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * BatchCompiler Class
+ *
+ * Compiles many source files in parallel on a ForkJoinPool. Every pool thread gets
+ * its own CompilerSession through Compiler, so no parser or AST state is shared.
+ * Results come back in the order the files were given, whatever order they finish in.
+ */
+public class BatchCompiler {
+    private final Compiler compiler;
+    private final int parallelism;
+
+    /**
+     * One compiled file.
+     */
+    public static class FileResult {
+        private final Path file;
+        private final CompilationResult result;  // null if the file could not be read or compiling it threw
+        private final String error;
+        private final long nanos;                // Reading plus compiling
+
+        FileResult(Path file, CompilationResult result, String error, long nanos) {
+            this.file = file;
+            this.result = result;
+            this.error = error;
+            this.nanos = nanos;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public CompilationResult getResult() {
+            return result;
+        }
+
+        public boolean isSuccess() {
+            return result != null && result.isSuccess();
+        }
+
+        /**
+         * Returns the read or compiler error, or the compile errors for this file.
+         */
+        public List<String> getErrors() {
+            return result == null ? List.of(error) : result.getErrors();
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        @Override
+        public String toString() {
+            return file + ": " + (isSuccess() ? "ok" : "FAILED") + " (" + millis(nanos) + " ms)";
+        }
+    }
+
+    /**
+     * All files of a batch, in input order, with aggregate timings.
+     */
+    public static class Report {
+        private final List<FileResult> files;
+        private final long wallNanos;
+        private final int parallelism;
+
+        Report(List<FileResult> files, long wallNanos, int parallelism) {
+            this.files = List.copyOf(files);
+            this.wallNanos = wallNanos;
+            this.parallelism = parallelism;
+        }
+
+        public List<FileResult> getFiles() {
+            return files;
+        }
+
+        public int getFailures() {
+            int failures = 0;
+            for (FileResult file : files) {
+                if (!file.isSuccess()) {
+                    failures++;
+                }
+            }
+            return failures;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        /**
+         * Returns the time of all files added up, as if they had been compiled one by one.
+         */
+        public long getTotalFileNanos() {
+            long total = 0;
+            for (FileResult file : files) {
+                total += file.nanos;
+            }
+            return total;
+        }
+
+        public double getFilesPerSecond() {
+            return wallNanos == 0 ? 0 : files.size() * 1e9 / wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Batch: " + files.size() + " files, " + getFailures() + " failed, "
+                    + parallelism + " threads, " + millis(wallNanos) + " ms wall, "
+                    + millis(getTotalFileNanos()) + " ms summed, "
+                    + String.format("%.1f", getFilesPerSecond()) + " files/sec";
+        }
+    }
+
+    /**
+     * @param options Options every file is compiled with
+     * @param parallelism Number of pool threads
+     */
+    public BatchCompiler(CompilerOptions options, int parallelism) {
+        this(new Compiler(options), parallelism);
+    }
+
+    /**
+     * @param compiler Shared by the pool threads, each of which gets its own session
+     * @param parallelism Number of pool threads
+     */
+    BatchCompiler(Compiler compiler, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("At least 1 thread is needed, got " + parallelism);
+        }
+        this.compiler = compiler;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Compiles every file and waits for all of them.
+     * @param files
+     * @return Report with one FileResult per file, in the same order
+     */
+    public Report compile(List<Path> files) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            long start = System.nanoTime();
+            List<ForkJoinTask<FileResult>> tasks = new ArrayList<>(files.size());
+            for (Path file : files) {
+                tasks.add(pool.submit(() -> compileFile(file)));
+            }
+            List<FileResult> results = new ArrayList<>(files.size());
+            for (ForkJoinTask<FileResult> task : tasks) {
+                results.add(task.join());  // Joined in submit order, so results keep the input order
+            }
+            return new Report(results, System.nanoTime() - start, parallelism);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private FileResult compileFile(Path file) {
+        long start = System.nanoTime();
+        try {
+            CompilationResult result = compiler.compile(SourceFiles.read(file));
+            return new FileResult(file, result, null, System.nanoTime() - start);
+        } catch (IOException e) {
+            return new FileResult(file, null, "Error reading the file: " + e.getMessage(), System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            // A compiler bug fails this file only, the rest of the batch still runs
+            return new FileResult(file, null, "Error compiling the file: " + e, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Expands directories to the regular files directly inside them, sorted by name.
+     * Files are kept as given.
+     * @param paths
+     * @return List of files
+     * @throws IOException if a directory cannot be listed
+     */
+    public static List<Path> expand(List<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> listing = Files.list(path)) {
+                    files.addAll(listing.filter(Files::isRegularFile).sorted().collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3f", nanos / 1e6);
+    }
+}
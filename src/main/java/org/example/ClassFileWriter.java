@@ -0,0 +1,178 @@
+package org.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ClassFileWriter Class
+ *
+ * Minimal writer for JVM class files: a constant pool, static methods with a Code
+ * attribute, and nothing else. Classes are written as version 49 (Java 5) so the
+ * JVM verifies them by type inference and no StackMapTable frames are needed.
+ */
+class ClassFileWriter {
+    static final int VERSION = 49;
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_STATIC = 0x0008;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    // Constant pool tags
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_INTEGER = 3;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final Map<String, Integer> poolIndex = new HashMap<>();  // Entry key -> index, so entries are shared
+    private int poolCount = 1;
+
+    private final String className;  // Internal name, e.g. org/example/GeneratedProgram1
+    private final int thisClass;
+    private final int superClass;
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassFileWriter(String className) {
+        this.className = className;
+        this.thisClass = classRef(className);
+        this.superClass = classRef("java/lang/Object");
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    int utf8(String value) {
+        Integer index = poolIndex.get("U" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(CONSTANT_UTF8);
+            pool.writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return newEntry("U" + value);
+    }
+
+    int integer(int value) {
+        Integer index = poolIndex.get("I" + value);
+        if (index != null) {
+            return index;
+        }
+        try {
+            pool.writeByte(CONSTANT_INTEGER);
+            pool.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return newEntry("I" + value);
+    }
+
+    int classRef(String internalName) {
+        Integer index = poolIndex.get("C" + internalName);
+        if (index != null) {
+            return index;
+        }
+        int name = utf8(internalName);
+        writeEntry(CONSTANT_CLASS, name);
+        return newEntry("C" + internalName);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        String key = "M" + owner + "." + name + descriptor;
+        Integer index = poolIndex.get(key);
+        if (index != null) {
+            return index;
+        }
+        int ownerIndex = classRef(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        writeEntry(CONSTANT_NAME_AND_TYPE, nameIndex, descriptorIndex);
+        int nameAndType = newEntry("N" + name + descriptor);
+        writeEntry(CONSTANT_METHODREF, ownerIndex, nameAndType);
+        return newEntry(key);
+    }
+
+    private void writeEntry(int tag, int... u2) {
+        try {
+            pool.writeByte(tag);
+            for (int value : u2) {
+                pool.writeShort(value);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int newEntry(String key) {
+        if (poolCount > 0xFFFF) {
+            throw new IllegalStateException("Constant pool is full");
+        }
+        poolIndex.put(key, poolCount);
+        return poolCount++;
+    }
+
+    /**
+     * Adds a method with the given bytecode and no exception handlers.
+     */
+    void addMethod(int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code, int codeLength) {
+        if (codeLength > 0xFFFF) {
+            throw new IllegalStateException("Method " + name + " is " + codeLength + " bytes, the JVM limit is 65535");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(codeLength + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(1);                 // One attribute: Code
+            out.writeShort(utf8("Code"));
+            out.writeInt(12 + codeLength);     // Attribute length
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(codeLength);
+            out.write(code, 0, codeLength);
+            out.writeShort(0);                 // No exception table
+            out.writeShort(0);                 // No attributes of Code
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(bytes.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(poolBytes.size() + 256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);                 // Minor version
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);                 // No interfaces
+            out.writeShort(0);                 // No fields
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);                 // No class attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
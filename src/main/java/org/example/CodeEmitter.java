@@ -0,0 +1,263 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * CodeEmitter Class
+ *
+ * Where code generation writes pseudo assembly. Instructions are written a piece at
+ * a time, opcode then operands, straight into the sink, so no String is built per
+ * instruction. Lines are separated by '\n' with no newline after the last one, the
+ * same text getCode() has always returned.
+ *
+ * The emitter counts the lines written, since labels are named after line numbers.
+ * Use of(StringBuilder), of(Writer) or new Bytes() for the sinks provided.
+ */
+public abstract class CodeEmitter {
+    private int lines;           // Lines started so far, counting any lines before this emitter
+    private boolean started;     // A line has been written, so the next one needs a separator
+    private int operands;        // Operands written on the current line
+
+    /**
+     * Starts a new line with an opcode, or any text that comes first on a line.
+     * @return this, for writing the operands
+     */
+    public final CodeEmitter instruction(String opcode) {
+        newLine();
+        write(opcode);
+        return this;
+    }
+
+    /**
+     * Writes an operand: a space before the first, a comma and space before the rest.
+     */
+    public final CodeEmitter operand(String operand) {
+        separateOperand();
+        write(operand);
+        return this;
+    }
+
+    public final CodeEmitter operand(int value) {
+        separateOperand();
+        write(value);
+        return this;
+    }
+
+    /**
+     * Writes an integer register operand, e.g. ri3 for 3.
+     */
+    public final CodeEmitter register(int register) {
+        separateOperand();
+        write("ri");
+        write(register);
+        return this;
+    }
+
+    /**
+     * Writes a branch target operand, e.g. label12 for 12.
+     */
+    public final CodeEmitter labelOperand(int label) {
+        separateOperand();
+        write("label");
+        write(label);
+        return this;
+    }
+
+    /**
+     * Writes a line holding the label for line number label, e.g. :label12.
+     */
+    public final CodeEmitter label(int label) {
+        newLine();
+        write(":label");
+        write(label);
+        return this;
+    }
+
+    /**
+     * Returns the number of lines written, plus any given to startAt().
+     */
+    public final int getLineCount() {
+        return lines;
+    }
+
+    /**
+     * Counts lines from lines instead of 0, for code that continues code written
+     * elsewhere. The first line written here still gets no separator in front.
+     */
+    final CodeEmitter startAt(int lines) {
+        this.lines = lines;
+        return this;
+    }
+
+    private void newLine() {
+        if (started) {
+            write('\n');
+        }
+        started = true;
+        lines++;
+        operands = 0;
+    }
+
+    private void separateOperand() {
+        if (operands++ == 0) {
+            write(' ');
+        } else {
+            write(',');
+            write(' ');
+        }
+    }
+
+    protected abstract void write(char c);
+
+    protected abstract void write(String text);
+
+    // Override to write the digits without making a String
+    protected void write(int value) {
+        write(Integer.toString(value));
+    }
+
+    /**
+     * Returns an emitter that appends to builder.
+     */
+    public static CodeEmitter of(StringBuilder builder) {
+        return new CodeEmitter() {
+            @Override
+            protected void write(char c) {
+                builder.append(c);
+            }
+
+            @Override
+            protected void write(String text) {
+                builder.append(text);
+            }
+
+            @Override
+            protected void write(int value) {
+                builder.append(value);
+            }
+        };
+    }
+
+    /**
+     * Returns an emitter that writes to out. An IOException from out is thrown as an
+     * UncheckedIOException, since code generation cannot throw checked exceptions.
+     */
+    public static CodeEmitter of(Writer out) {
+        return new CodeEmitter() {
+            @Override
+            protected void write(char c) {
+                try {
+                    out.write(c);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            protected void write(String text) {
+                try {
+                    out.write(text);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Encodes the code as UTF-8 into a growing byte array, ready to be written to a
+     * file or channel without going through a String.
+     */
+    public static class Bytes extends CodeEmitter {
+        private byte[] bytes;
+        private int size;
+
+        public Bytes() {
+            this(1024);
+        }
+
+        public Bytes(int capacity) {
+            bytes = new byte[Math.max(capacity, 16)];
+        }
+
+        @Override
+        protected void write(char c) {
+            if (c < 0x80) {
+                ensureCapacity(1);
+                bytes[size++] = (byte) c;
+            } else {
+                write(String.valueOf(c));
+            }
+        }
+
+        @Override
+        protected void write(String text) {
+            int length = text.length();
+            ensureCapacity(length);
+            for (int i = 0; i < length; i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    // Variable names may hold any letter, encode the rest the slow way
+                    byte[] encoded = text.substring(i).getBytes(StandardCharsets.UTF_8);
+                    ensureCapacity(encoded.length);
+                    System.arraycopy(encoded, 0, bytes, size, encoded.length);
+                    size += encoded.length;
+                    return;
+                }
+                bytes[size++] = (byte) c;
+            }
+        }
+
+        @Override
+        protected void write(int value) {
+            if (value < 0) {
+                write(Integer.toString(value));
+                return;
+            }
+            ensureCapacity(10);
+            int start = size;
+            do {
+                bytes[size++] = (byte) ('0' + value % 10);
+                value /= 10;
+            } while (value > 0);
+            // The digits went in backwards
+            for (int i = start, j = size - 1; i < j; i++, j--) {
+                byte digit = bytes[i];
+                bytes[i] = bytes[j];
+                bytes[j] = digit;
+            }
+        }
+
+        private void ensureCapacity(int more) {
+            if (size + more > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + more));
+            }
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns a read-only view of the bytes written so far, without copying.
+         */
+        public ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(bytes, 0, size).asReadOnlyBuffer();
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(bytes, 0, size);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, size, StandardCharsets.UTF_8);
+        }
+    }
+}
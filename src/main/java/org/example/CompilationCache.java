@@ -0,0 +1,294 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CompilationCache Class
+ *
+ * Remembers compiled programs by the SHA-256 of their source text and compiler
+ * options, so compiling the same source again skips scanning, parsing, the passes
+ * and code generation. Entries are kept in a small in-memory LRU map and, when a
+ * directory is given, also on disk where they outlive the process. The disk tier
+ * is bounded by total file size and drops the least recently used files first.
+ *
+ * Keys also hash FORMAT_VERSION, so disk entries written by a compiler that
+ * generated different code are never served after an upgrade. Files are written
+ * under a temporary name and moved into place, so a reader never sees half an entry.
+ */
+public class CompilationCache {
+    private static final String PSEUDO_SUFFIX = ".pasm";
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    // Bump whenever generated code or the entry files change, e.g. a codegen fix
+    static final int FORMAT_VERSION = 2;
+
+    /**
+     * A compiled program: pseudo assembly for the pseudo and interpreter backends,
+     * class file bytes for the JVM backend.
+     */
+    public static class Entry {
+        private final String pseudoCode;
+        private final byte[] bytecode;
+
+        public Entry(String pseudoCode, byte[] bytecode) {
+            this.pseudoCode = pseudoCode;
+            this.bytecode = bytecode;
+        }
+
+        public String getPseudoCode() {
+            return pseudoCode;
+        }
+
+        public byte[] getBytecode() {
+            return bytecode;
+        }
+
+        long size() {
+            return (pseudoCode == null ? 0 : pseudoCode.length()) + (bytecode == null ? 0 : bytecode.length);
+        }
+    }
+
+    private final Map<String, Entry> memory;
+    private final Path directory;      // null when there is no disk tier
+    private final long maxDiskBytes;
+
+    private long hits;
+    private long diskHits;             // Hits that had to be read back from disk
+    private long misses;
+    private long evictions;            // Entries dropped from either tier
+
+    /**
+     * Creates a cache that only keeps entries in memory.
+     * @param maxEntries Entries kept in memory before the least recently used is dropped
+     */
+    public CompilationCache(int maxEntries) {
+        this.memory = lruMap(maxEntries);
+        this.directory = null;
+        this.maxDiskBytes = 0;
+    }
+
+    /**
+     * Creates a cache with an in-memory tier and, if directory is not null, a disk tier.
+     * @param maxEntries Entries kept in memory before the least recently used is dropped
+     * @param directory Where entries are written, created if missing
+     * @param maxDiskBytes Total size of the files in directory before old ones are deleted
+     * @throws IOException if the directory cannot be created
+     */
+    public CompilationCache(int maxEntries, Path directory, long maxDiskBytes) throws IOException {
+        this.memory = lruMap(maxEntries);
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+    }
+
+    private Map<String, Entry> lruMap(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache needs room for at least 1 entry");
+        }
+        return new LinkedHashMap<>(16, 0.75f, true) {  // Access order, eldest is least recently used
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache key for a source text compiled with options by this version
+     * of the compiler.
+     * @param source
+     * @param options
+     * @return Lower case hex SHA-256
+     */
+    public static String key(CharBuffer source, CompilerOptions options) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);  // Every JDK has SHA-256
+        }
+        digest.update(StandardCharsets.UTF_8.encode(source.duplicate()));
+        digest.update((byte) 0);  // Keeps the source and the options apart
+        digest.update(options.toString().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(("format=" + FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    public static String key(String source, CompilerOptions options) {
+        return key(CharBuffer.wrap(source), options);
+    }
+
+    /**
+     * Looks a key up in memory, then on disk.
+     * @param key
+     * @return Entry, or null on a miss
+     */
+    public synchronized Entry get(String key) {
+        Entry entry = memory.get(key);
+        if (entry == null && directory != null) {
+            entry = readDisk(key);
+            if (entry != null) {
+                diskHits++;
+                memory.put(key, entry);
+            }
+        }
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores an entry in memory and, if there is a disk tier, on disk.
+     * @param key
+     * @param entry
+     */
+    public synchronized void put(String key, Entry entry) {
+        memory.put(key, entry);
+        if (directory != null) {
+            writeDisk(key, entry);
+        }
+    }
+
+    // A disk tier that cannot be read or written only costs the hit, so I/O errors
+    // are treated as misses rather than failing the compile.
+    private Entry readDisk(String key) {
+        Path pseudoFile = directory.resolve(key + PSEUDO_SUFFIX);
+        Path classFile = directory.resolve(key + CLASS_SUFFIX);
+        try {
+            String pseudoCode = null;
+            byte[] bytecode = null;
+            FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+            if (Files.exists(pseudoFile)) {
+                pseudoCode = Files.readString(pseudoFile);
+                Files.setLastModifiedTime(pseudoFile, now);  // Mark as recently used
+            }
+            if (Files.exists(classFile)) {
+                bytecode = Files.readAllBytes(classFile);
+                Files.setLastModifiedTime(classFile, now);
+            }
+            return pseudoCode == null && bytecode == null ? null : new Entry(pseudoCode, bytecode);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, Entry entry) {
+        if (entry.size() > maxDiskBytes) {
+            return;  // Would only evict everything else and then itself
+        }
+        try {
+            if (entry.getPseudoCode() != null) {
+                writeAtomically(directory.resolve(key + PSEUDO_SUFFIX),
+                        entry.getPseudoCode().getBytes(StandardCharsets.UTF_8));
+            }
+            if (entry.getBytecode() != null) {
+                writeAtomically(directory.resolve(key + CLASS_SUFFIX), entry.getBytecode());
+            }
+            trimDisk(key);
+        } catch (IOException e) {
+            // Leave the disk tier as it is, the entry is still in memory
+        }
+    }
+
+    // Writes a temporary file next to target and renames it over target, so an
+    // interrupted write never leaves a truncated entry under the real name
+    private void writeAtomically(Path target, byte[] bytes) throws IOException {
+        Path temp = Files.createTempFile(directory, target.getFileName().toString(), TEMP_SUFFIX);
+        try {
+            Files.write(temp, bytes);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);  // Only still there if the write or move failed
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the directory fits in maxDiskBytes,
+     * never the ones just written for keep.
+     */
+    private void trimDisk(String keep) throws IOException {
+        List<Path> files = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{pasm,class}")) {
+            for (Path file : stream) {
+                files.add(file);
+                total += Files.size(file);
+            }
+        }
+        if (total <= maxDiskBytes) {
+            return;
+        }
+        Map<Path, FileTime> modified = new LinkedHashMap<>();
+        for (Path file : files) {
+            modified.put(file, Files.getLastModifiedTime(file));
+        }
+        files.sort((a, b) -> modified.get(a).compareTo(modified.get(b)));
+        for (Path file : files) {
+            if (total <= maxDiskBytes) {
+                break;
+            }
+            if (file.getFileName().toString().startsWith(keep + ".")) {
+                continue;
+            }
+            total -= Files.size(file);
+            Files.delete(file);
+            evictions++;
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Compilation cache: " + hits + " hits (" + diskHits + " from disk), "
+                + misses + " misses, " + evictions + " evictions";
+    }
+}
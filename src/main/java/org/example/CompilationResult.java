@@ -0,0 +1,152 @@
+package org.example;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CompilationResult Class
+ *
+ * Everything one compile produced. The errors and symbol table are read-only and
+ * getProgram() returns a copy. The trees and reports are the objects the passes
+ * built; the session never touches them again, so a result can be handed to
+ * another thread, but they are not copied and should not be changed. A report is
+ * null when its pass did not run.
+ */
+public class CompilationResult {
+    private final boolean success;
+    private final List<String> errors;
+    private final AbstractSyntaxTree abstractSyntaxTree;
+    private final FlatAst flatAst;
+    private final Map<String, SymbolTableItem> symbolTable;
+    private final PseudoProgram program;
+    private final String pseudoCode;
+    private final JvmBackend.CompiledClass compiledClass;
+
+    private final ConstantFolder.Report foldReport;
+    private final int valueNumberingReuses;
+    private final DeadCodeEliminator.Report deadCodeReport;
+    private final RegisterAllocator.Report allocationReport;
+    private final PeepholeOptimizer.Report peepholeReport;
+    private final CompilerMetrics metrics;
+
+    CompilationResult(boolean success, List<String> errors, AbstractSyntaxTree abstractSyntaxTree, FlatAst flatAst,
+                      Map<String, SymbolTableItem> symbolTable, PseudoProgram program, String pseudoCode,
+                      JvmBackend.CompiledClass compiledClass, ConstantFolder.Report foldReport,
+                      int valueNumberingReuses, DeadCodeEliminator.Report deadCodeReport,
+                      RegisterAllocator.Report allocationReport, PeepholeOptimizer.Report peepholeReport,
+                      CompilerMetrics metrics) {
+        this.success = success;
+        this.errors = List.copyOf(errors);
+        this.abstractSyntaxTree = abstractSyntaxTree;
+        this.flatAst = flatAst;
+        this.symbolTable = symbolTable == null ? null : Collections.unmodifiableMap(symbolTable);
+        this.program = program;
+        this.pseudoCode = pseudoCode;
+        this.compiledClass = compiledClass;
+        this.foldReport = foldReport;
+        this.valueNumberingReuses = valueNumberingReuses;
+        this.deadCodeReport = deadCodeReport;
+        this.allocationReport = allocationReport;
+        this.peepholeReport = peepholeReport;
+        this.metrics = metrics;
+    }
+
+    static CompilationResult failed(List<String> errors, AbstractSyntaxTree abstractSyntaxTree,
+                                    Map<String, SymbolTableItem> symbolTable, CompilerMetrics metrics) {
+        return new CompilationResult(false, errors, abstractSyntaxTree, null, symbolTable, null, null, null,
+                null, 0, null, null, null, metrics);
+    }
+
+    /**
+     * Returns true if the source parsed and code was generated for the backend.
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Returns the errors reported while compiling, in order.
+     */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns true if the source parsed, even if code generation failed later.
+     */
+    public boolean isParsed() {
+        return abstractSyntaxTree != null || flatAst != null;
+    }
+
+    /**
+     * Returns the object tree, or null if the source did not parse or was compiled
+     * straight from a FlatAst.
+     */
+    public AbstractSyntaxTree getAbstractSyntaxTree() {
+        return abstractSyntaxTree;
+    }
+
+    /**
+     * Returns the flat AST when code was generated from it, otherwise null.
+     */
+    public FlatAst getFlatAst() {
+        return flatAst;
+    }
+
+    /**
+     * Returns a read-only view of the declared variables.
+     */
+    public Map<String, SymbolTableItem> getSymbolTable() {
+        return symbolTable;
+    }
+
+    /**
+     * Returns a copy of the pseudo assembly after all passes, or null for the JVM
+     * backend. Each call makes a new copy, so changes to it are not seen here.
+     */
+    public PseudoProgram getProgram() {
+        return program == null ? null : program.copy();
+    }
+
+    /**
+     * Returns getProgram() as text, or null for the JVM backend.
+     */
+    public String getPseudoCode() {
+        return pseudoCode;
+    }
+
+    /**
+     * Returns the class made by the JVM backend, or null for the other backends.
+     */
+    public JvmBackend.CompiledClass getCompiledClass() {
+        return compiledClass;
+    }
+
+    public ConstantFolder.Report getFoldReport() {
+        return foldReport;
+    }
+
+    public int getValueNumberingReuses() {
+        return valueNumberingReuses;
+    }
+
+    public DeadCodeEliminator.Report getDeadCodeReport() {
+        return deadCodeReport;
+    }
+
+    public RegisterAllocator.Report getAllocationReport() {
+        return allocationReport;
+    }
+
+    public PeepholeOptimizer.Report getPeepholeReport() {
+        return peepholeReport;
+    }
+
+    /**
+     * Returns the time, allocation and counts of each phase that ran, failed ones included.
+     */
+    public CompilerMetrics getMetrics() {
+        return metrics;
+    }
+}
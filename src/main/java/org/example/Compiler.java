@@ -0,0 +1,52 @@
+package org.example;
+
+import java.nio.CharBuffer;
+
+/**
+ * Compiler Class
+ *
+ * Thread-safe front for compiling many sources with the same options. Each thread
+ * that calls compile gets a CompilerSession of its own the first time and reuses it
+ * after that, so workers never share parser or code generator state and never lock.
+ */
+public class Compiler {
+    private final CompilerOptions options;
+    private final Diagnostics diagnostics;
+    private final ThreadLocal<CompilerSession> sessions;
+
+    public Compiler(CompilerOptions options) {
+        this(options, Diagnostics.SILENT);
+    }
+
+    /**
+     * @param options Copied, later changes to options do not affect the compiler
+     * @param diagnostics Shared by all threads, so it must be thread-safe itself
+     */
+    public Compiler(CompilerOptions options, Diagnostics diagnostics) {
+        CompilerOptions copy = new CompilerOptions(options);
+        this.options = copy;
+        this.diagnostics = diagnostics;
+        // Captures the fields, not this, so no reference escapes before construction ends
+        this.sessions = ThreadLocal.withInitial(() -> new CompilerSession(copy, diagnostics));
+    }
+
+    /**
+     * Creates a session with this compiler's options, for callers that manage their own workers.
+     * @return CompilerSession
+     */
+    public CompilerSession newSession() {
+        return new CompilerSession(options, diagnostics);
+    }
+
+    public CompilationResult compile(String source) {
+        return sessions.get().compile(source);
+    }
+
+    public CompilationResult compile(CharBuffer source) {
+        return sessions.get().compile(source);
+    }
+
+    public CompilerOptions getOptions() {
+        return new CompilerOptions(options);
+    }
+}
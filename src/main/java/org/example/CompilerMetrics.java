@@ -0,0 +1,223 @@
+package org.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CompilerMetrics Class
+ *
+ * Wall time, bytes allocated and item counts (tokens, nodes, instructions, ...) for
+ * each phase of a compile, in the order the phases started. Every phase is also
+ * committed as a CompilerPhaseEvent, so a Flight Recorder recording
+ * (-XX:StartFlightRecording) shows the phases with no extra tooling.
+ *
+ * Allocation is measured for the current thread, so a phase has to end on the
+ * thread that started it. Not thread-safe; each compile has its own.
+ */
+public class CompilerMetrics {
+    // Null when the JVM cannot measure allocation per thread
+    private static final com.sun.management.ThreadMXBean THREADS = allocationBean();
+
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * A phase being measured or already ended.
+     */
+    public static class Phase {
+        private final String name;
+        private final long startNanos;
+        private final long startBytes;
+        private final CompilerPhaseEvent event = new CompilerPhaseEvent();
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+        private long nanos = -1;           // -1 until ended
+        private long allocatedBytes = -1;  // -1 until ended, or if allocation is not measured
+
+        private Phase(String name) {
+            this.name = name;
+            event.begin();
+            startBytes = allocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        /**
+         * Records how many items of a kind the phase handled, e.g. count("tokens", 120).
+         * @return this, so counts can be chained
+         */
+        public Phase count(String unit, long items) {
+            counts.put(unit, items);
+            return this;
+        }
+
+        /**
+         * Stops the clock and commits the Flight Recorder event. Only the first call counts.
+         */
+        public void end() {
+            if (nanos >= 0) {
+                return;
+            }
+            nanos = System.nanoTime() - startNanos;
+            long endBytes = allocatedBytes();
+            allocatedBytes = startBytes < 0 || endBytes < 0 ? -1 : endBytes - startBytes;
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = name;
+                event.allocatedBytes = allocatedBytes;
+                if (!counts.isEmpty()) {
+                    Map.Entry<String, Long> first = counts.entrySet().iterator().next();
+                    event.itemUnit = first.getKey();
+                    event.items = first.getValue();
+                }
+                event.commit();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * Returns the counts in the order they were recorded.
+         */
+        public Map<String, Long> getCounts() {
+            return Collections.unmodifiableMap(counts);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(String.format("%-16s %10.3f ms", name, nanos / 1e6));
+            sb.append(allocatedBytes >= 0 ? String.format(" %12d bytes", allocatedBytes) : "            ? bytes");
+            for (Map.Entry<String, Long> count : counts.entrySet()) {
+                sb.append(", ").append(count.getValue()).append(' ').append(count.getKey());
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Starts measuring a phase. End it with Phase.end(), in a finally block if the
+     * phase can throw.
+     * @param name Short name such as "parse" or "codegen"
+     * @return Phase
+     */
+    public Phase start(String name) {
+        Phase phase = new Phase(name);
+        phases.add(phase);
+        return phase;
+    }
+
+    /**
+     * Adds the phases of another compile after these, e.g. the compile after reading the file.
+     */
+    public void addAll(CompilerMetrics other) {
+        phases.addAll(other.phases);
+    }
+
+    public List<Phase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    public long getTotalNanos() {
+        long total = 0;
+        for (Phase phase : phases) {
+            total += Math.max(phase.nanos, 0);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the total allocated by all phases, or -1 if allocation is not measured.
+     */
+    public long getTotalAllocatedBytes() {
+        long total = 0;
+        for (Phase phase : phases) {
+            if (phase.allocatedBytes < 0) {
+                return -1;
+            }
+            total += phase.allocatedBytes;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the metrics as a JSON object:
+     * {"phases": [{"name": ..., "nanos": ..., "allocatedBytes": ..., "counts": {...}}, ...],
+     * "totalNanos": ..., "totalAllocatedBytes": ...}
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{\n  \"phases\": [");
+        for (int i = 0; i < phases.size(); i++) {
+            Phase phase = phases.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": ").append(quote(phase.name))
+                    .append(", \"nanos\": ").append(phase.nanos)
+                    .append(", \"allocatedBytes\": ").append(phase.allocatedBytes)
+                    .append(", \"counts\": {");
+            String separator = "";
+            for (Map.Entry<String, Long> count : phase.counts.entrySet()) {
+                json.append(separator).append(quote(count.getKey())).append(": ").append(count.getValue());
+                separator = ", ";
+            }
+            json.append("}}");
+        }
+        json.append(phases.isEmpty() ? "]" : "\n  ]");
+        json.append(",\n  \"totalNanos\": ").append(getTotalNanos());
+        json.append(",\n  \"totalAllocatedBytes\": ").append(getTotalAllocatedBytes());
+        return json.append("\n}\n").toString();
+    }
+
+    // Phase names and units are plain words, but quote and escape them properly anyway
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Compiler metrics:");
+        for (Phase phase : phases) {
+            sb.append("\n  ").append(phase);
+        }
+        sb.append(String.format("%n  %-16s %10.3f ms", "total", getTotalNanos() / 1e6));
+        long allocated = getTotalAllocatedBytes();
+        sb.append(allocated >= 0 ? String.format(" %12d bytes", allocated) : "            ? bytes");
+        return sb.toString();
+    }
+
+    // Bytes allocated so far by the current thread, or -1 if not measured
+    private static long allocatedBytes() {
+        return THREADS != null ? THREADS.getCurrentThreadAllocatedBytes() : -1;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads;
+            }
+        }
+        return null;
+    }
+}
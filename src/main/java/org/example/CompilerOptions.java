@@ -0,0 +1,144 @@
+package org.example;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * CompilerOptions Class
+ *
+ * Settings that change the code the compiler produces.
+ */
+public class CompilerOptions {
+    enum Backend {
+        PSEUDO,       // PseudoAssemblyWithStringProgram from PseudoAssemblyObf.jar
+        INTERPRETER,  // PseudoInterpreter, in process
+        JVM           // JvmBackend, bytecode straight from the AST
+    }
+
+    private Backend backend = Backend.PSEUDO;
+    private int registerCount = 32;        // Integer registers the backend provides
+    private boolean constantFolding;       // Run ConstantFolder over the AST
+    private boolean deadCodeElimination;   // Run DeadCodeEliminator over the pseudo assembly
+    private boolean valueNumbering;        // Reuse registers holding equal sums while generating code
+    private boolean peephole;              // Run PeepholeOptimizer before handing code to the backend
+    private Set<String> disabledPeepholeRules = new TreeSet<>();  // Sorted, so toString() is stable
+    private boolean hiddenClasses = true;  // JVM backend loads each program as a hidden class
+    private boolean flatAst;               // Parse into a FlatAst instead of the object tree
+
+    public CompilerOptions() {
+    }
+
+    /**
+     * Copies every setting of other.
+     * @param other
+     */
+    public CompilerOptions(CompilerOptions other) {
+        this.backend = other.backend;
+        this.registerCount = other.registerCount;
+        this.constantFolding = other.constantFolding;
+        this.deadCodeElimination = other.deadCodeElimination;
+        this.valueNumbering = other.valueNumbering;
+        this.peephole = other.peephole;
+        this.disabledPeepholeRules = new TreeSet<>(other.disabledPeepholeRules);
+        this.hiddenClasses = other.hiddenClasses;
+        this.flatAst = other.flatAst;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    public int getRegisterCount() {
+        return registerCount;
+    }
+
+    public void setRegisterCount(int registerCount) {
+        this.registerCount = registerCount;
+    }
+
+    public boolean isConstantFolding() {
+        return constantFolding;
+    }
+
+    public void setConstantFolding(boolean constantFolding) {
+        this.constantFolding = constantFolding;
+    }
+
+    public boolean isDeadCodeElimination() {
+        return deadCodeElimination;
+    }
+
+    public void setDeadCodeElimination(boolean deadCodeElimination) {
+        this.deadCodeElimination = deadCodeElimination;
+    }
+
+    public boolean isValueNumbering() {
+        return valueNumbering;
+    }
+
+    public void setValueNumbering(boolean valueNumbering) {
+        this.valueNumbering = valueNumbering;
+    }
+
+    public boolean isPeephole() {
+        return peephole;
+    }
+
+    public void setPeephole(boolean peephole) {
+        this.peephole = peephole;
+    }
+
+    public Set<String> getDisabledPeepholeRules() {
+        return disabledPeepholeRules;
+    }
+
+    public void disablePeepholeRule(String name) {
+        disabledPeepholeRules.add(name);
+    }
+
+    public boolean isHiddenClasses() {
+        return hiddenClasses;
+    }
+
+    public void setHiddenClasses(boolean hiddenClasses) {
+        this.hiddenClasses = hiddenClasses;
+    }
+
+    public boolean isFlatAst() {
+        return flatAst;
+    }
+
+    public void setFlatAst(boolean flatAst) {
+        this.flatAst = flatAst;
+    }
+
+    /**
+     * Turns on every optimization pass.
+     */
+    public void enableAllOptimizations() {
+        constantFolding = true;
+        deadCodeElimination = true;
+        valueNumbering = true;
+        peephole = true;
+    }
+
+    /**
+     * Returns all settings in a fixed order, so equal options give equal strings.
+     * How a class is loaded and which AST is used do not change the code, so
+     * hiddenClasses and flatAst are left out.
+     */
+    @Override
+    public String toString() {
+        return "backend=" + backend
+                + ",registers=" + registerCount
+                + ",fold=" + constantFolding
+                + ",dce=" + deadCodeElimination
+                + ",cse=" + valueNumbering
+                + ",peephole=" + peephole
+                + ",skip=" + String.join("|", disabledPeepholeRules);
+    }
+}
@@ -0,0 +1,38 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * CompilerPhaseEvent Class
+ *
+ * JDK Flight Recorder event for one phase of a compile, committed by
+ * CompilerMetrics.Phase.end(). The event's own duration is the wall time of the
+ * phase. Costs next to nothing when no recording is running.
+ */
+@Name("org.example.CompilerPhase")
+@Label("Compiler Phase")
+@Category("Compiler")
+@Description("One phase of compiling or running a program")
+@StackTrace(false)
+class CompilerPhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Allocated")
+    @Description("Bytes allocated by the thread during the phase, -1 if the JVM cannot tell")
+    @DataAmount
+    long allocatedBytes;
+
+    @Label("Items")
+    @Description("The first count recorded for the phase")
+    long items;
+
+    @Label("Item Unit")
+    String itemUnit;
+}
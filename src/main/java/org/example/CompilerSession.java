@@ -0,0 +1,194 @@
+package org.example;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CompilerSession Class
+ *
+ * Runs the whole pipeline for one source at a time: parse, the optional passes,
+ * register allocation and code generation for the chosen backend. A session keeps
+ * its parser and backend between compiles, but every compile starts from a fresh
+ * AST and symbol table and returns a CompilationResult that owns all of its output.
+ *
+ * A session is not thread-safe. Give each worker thread its own, or use
+ * Compiler, which keeps one per thread.
+ */
+public class CompilerSession {
+    private final CompilerOptions options;
+    private final ErrorCollector errors;
+    private final MyParser parser;
+    private final FlatParser flatParser;
+    private final JvmBackend jvmBackend = new JvmBackend();
+
+    /**
+     * Creates a session that reports nothing while compiling.
+     * @param options Copied, later changes to options do not affect the session
+     */
+    public CompilerSession(CompilerOptions options) {
+        this(options, Diagnostics.SILENT);
+    }
+
+    /**
+     * Creates a session that also passes errors and traces on to diagnostics.
+     * @param options Copied, later changes to options do not affect the session
+     * @param diagnostics
+     */
+    public CompilerSession(CompilerOptions options, Diagnostics diagnostics) {
+        this.options = new CompilerOptions(options);
+        this.errors = new ErrorCollector(diagnostics);
+        this.parser = new MyParser(errors);
+        this.flatParser = new FlatParser(errors);
+    }
+
+    public CompilationResult compile(String source) {
+        char[] chars = source.toCharArray();
+        return compile(new MyScanner(chars, 0, chars.length));
+    }
+
+    public CompilationResult compile(CharBuffer source) {
+        return compile(new MyScanner(source));
+    }
+
+    private CompilationResult compile(MyScanner scanner) {
+        List<String> messages = new ArrayList<>();
+        CompilerMetrics metrics = new CompilerMetrics();
+        errors.messages = messages;
+        try {
+            CompilerMetrics.Phase parse = metrics.start("parse");
+            if (options.isFlatAst()) {
+                FlatAst flat = flatParser.parse(scanner);
+                parse.count("tokens", scanner.getTokenCount());
+                if (flat == null) {
+                    parse.end();
+                    return CompilationResult.failed(messages, null, Map.of(), metrics);
+                }
+                parse.count("nodes", flat.getNodeCount()).end();
+                if (options.isConstantFolding() || options.isValueNumbering()
+                        || options.getBackend() == CompilerOptions.Backend.JVM) {
+                    // These work on the object tree
+                    CompilerMetrics.Phase convert = metrics.start("flat-to-tree");
+                    AbstractSyntaxTree ast = flat.toAbstractSyntaxTree();
+                    convert.count("nodes", ast.getNodeCount()).end();
+                    return generate(ast, null, flat.getSymbolTable(), messages, metrics);
+                }
+                return generate(null, flat, flat.getSymbolTable(), messages, metrics);
+            }
+            boolean parsed = parser.parse(scanner);
+            parse.count("tokens", scanner.getTokenCount());
+            if (!parsed) {
+                parse.end();
+                return CompilationResult.failed(messages, null, parser.getSymbolTable(), metrics);
+            }
+            parse.count("nodes", parser.getAbstractSyntaxTree().getNodeCount()).end();
+            return generate(parser.getAbstractSyntaxTree(), null, parser.getSymbolTable(), messages, metrics);
+        } finally {
+            errors.messages = null;
+        }
+    }
+
+    // Generates code from ast, or from flat when there is no ast
+    private CompilationResult generate(AbstractSyntaxTree ast, FlatAst flat, Map<String, SymbolTableItem> symbolTable,
+                                       List<String> messages, CompilerMetrics metrics) {
+        ConstantFolder.Report foldReport = null;
+        if (options.isConstantFolding()) {
+            CompilerMetrics.Phase fold = metrics.start("fold");
+            foldReport = new ConstantFolder().fold(ast);
+            fold.count("nodes", ast.getNodeCount()).end();
+        }
+        if (options.getBackend() == CompilerOptions.Backend.JVM) {
+            JvmBackend.CompiledClass compiled;
+            CompilerMetrics.Phase codegen = metrics.start("jvm-codegen");
+            try {
+                compiled = jvmBackend.compile(ast);
+                codegen.count("bytes", compiled.getBytes().length);
+            } catch (IllegalStateException e) {
+                messages.add(e.getMessage());
+                return CompilationResult.failed(messages, ast, symbolTable, metrics);
+            } finally {
+                codegen.end();
+            }
+            return new CompilationResult(true, messages, ast, null, symbolTable, null, null, compiled,
+                    foldReport, 0, null, null, null, metrics);
+        }
+
+        CompilerMetrics.Phase codegen = metrics.start("codegen");
+        String code;
+        if (ast != null) {
+            ast.setValueNumbering(options.isValueNumbering());
+            code = ast.getCode();
+        } else {
+            code = flat.getCode();
+        }
+        PseudoProgram program = PseudoProgram.parse(code);
+        codegen.count("instructions", program.code.size()).end();
+        DeadCodeEliminator.Report deadCodeReport = null;
+        if (options.isDeadCodeElimination()) {
+            CompilerMetrics.Phase dce = metrics.start("dce");
+            deadCodeReport = new DeadCodeEliminator().eliminate(program);
+            dce.count("instructions", program.code.size()).end();
+        }
+
+        // Fit the code into the registers the backend provides
+        RegisterAllocator.Report allocationReport;
+        CompilerMetrics.Phase allocate = metrics.start("regalloc");
+        try {
+            allocationReport = new RegisterAllocator(options.getRegisterCount()).allocate(program);
+            allocate.count("instructions", program.code.size());
+        } catch (IllegalArgumentException e) {
+            messages.add(e.getMessage());
+            return CompilationResult.failed(messages, ast, symbolTable, metrics);
+        } finally {
+            allocate.end();
+        }
+        PeepholeOptimizer.Report peepholeReport = null;
+        if (options.isPeephole()) {
+            CompilerMetrics.Phase peephole = metrics.start("peephole");
+            peepholeReport = PeepholeOptimizer.without(options.getDisabledPeepholeRules()).optimize(program);
+            peephole.count("instructions", program.code.size()).end();
+        }
+        int valueNumberingReuses = ast != null ? ast.getValueNumberingReuses() : 0;
+        return new CompilationResult(true, messages, ast, flat, symbolTable, program, program.toString(), null,
+                foldReport, valueNumberingReuses, deadCodeReport, allocationReport, peepholeReport, metrics);
+    }
+
+    /**
+     * Returns a copy of the options this session compiles with.
+     */
+    public CompilerOptions getOptions() {
+        return new CompilerOptions(options);
+    }
+
+    // Records parse errors for the result and passes everything on to the user's sink
+    private static class ErrorCollector implements Diagnostics {
+        private final Diagnostics target;
+        List<String> messages;  // Errors of the compile in progress
+
+        ErrorCollector(Diagnostics target) {
+            this.target = target;
+        }
+
+        @Override
+        public Level getLevel() {
+            // Errors are always wanted for the result, even when the target is silent
+            return target.getLevel() == Level.OFF ? Level.ERRORS : target.getLevel();
+        }
+
+        @Override
+        public void error(String message) {
+            if (messages != null) {
+                messages.add(message);
+            }
+            if (target.isErrorEnabled()) {
+                target.error(message);
+            }
+        }
+
+        @Override
+        public void trace(String message) {
+            target.trace(message);
+        }
+    }
+}
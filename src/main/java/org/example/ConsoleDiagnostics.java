@@ -0,0 +1,37 @@
+package org.example;
+
+import java.io.PrintStream;
+
+/**
+ * ConsoleDiagnostics Class
+ *
+ * Diagnostics sink that prints messages to a PrintStream, System.out by default.
+ */
+public class ConsoleDiagnostics implements Diagnostics {
+    private final Level level;
+    private final PrintStream out;
+
+    public ConsoleDiagnostics(Level level) {
+        this(level, System.out);
+    }
+
+    public ConsoleDiagnostics(Level level, PrintStream out) {
+        this.level = level;
+        this.out = out;
+    }
+
+    @Override
+    public Level getLevel() {
+        return level;
+    }
+
+    @Override
+    public void error(String message) {
+        out.println(message);
+    }
+
+    @Override
+    public void trace(String message) {
+        out.println(message);
+    }
+}
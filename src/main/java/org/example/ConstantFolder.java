@@ -0,0 +1,191 @@
+package org.example;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ConstantFolder Class
+ *
+ * Optimization pass run over the AST between parsing and getCode(). It tracks
+ * which variables hold a value known at compile time, folds the known parts of
+ * every calc into a single literal, turns a fully known calc into a set, and
+ * decides if statements whose two sides are known, removing the branch and, when
+ * the condition is false, the whole block.
+ */
+public class ConstantFolder {
+
+    /**
+     * Counts of what the pass changed.
+     */
+    public static class Report {
+        int foldedCalcs;      // calc statements whose sum got shorter
+        int calcsToSets;      // calc statements replaced by a set of a literal
+        int decidedIfs;       // if statements removed because the condition was known
+        int removedStatements; // statements dropped with a false if
+
+        public int getFoldedCalcs() {
+            return foldedCalcs;
+        }
+
+        public int getCalcsToSets() {
+            return calcsToSets;
+        }
+
+        public int getDecidedIfs() {
+            return decidedIfs;
+        }
+
+        public int getRemovedStatements() {
+            return removedStatements;
+        }
+
+        @Override
+        public String toString() {
+            return "Constant folding: " + foldedCalcs + " calcs folded, " + calcsToSets + " calcs made sets, "
+                    + decidedIfs + " ifs decided, " + removedStatements + " statements removed";
+        }
+    }
+
+    private AbstractSyntaxTree ast;
+    private Report report;
+
+    /**
+     * Folds the program held by ast in place.
+     * @param ast
+     * @return Report
+     */
+    public Report fold(AbstractSyntaxTree ast) {
+        this.ast = ast;
+        this.report = new Report();
+        if (ast.getRoot() != null) {
+            AbstractSyntaxTree.NodeStmts stmts = ast.getRoot().stmts;
+            stmts.stmts = foldStmts(stmts.stmts, new HashMap<>());
+        }
+        return report;
+    }
+
+    /**
+     * Folds a list of statements, updating known with the values that are known
+     * after them. Returns the new list of statements. If blocks are folded with a
+     * stack of the blocks still open instead of recursion, so deep nesting is fine.
+     */
+    private List<AbstractSyntaxTree.NodeStmt> foldStmts(List<AbstractSyntaxTree.NodeStmt> stmts, Map<String, Integer> known) {
+        Block outermost = new Block(stmts, new ArrayList<>(stmts.size()), known, null, null);
+        Deque<Block> blocks = new ArrayDeque<>();
+        blocks.push(outermost);
+        while (!blocks.isEmpty()) {
+            Block block = blocks.peek();
+            if (block.next == block.stmts.size()) {
+                blocks.pop();
+                if (block.nodeIf != null) {
+                    // The block may or may not have run, so afterwards only values that agree on both paths are known
+                    block.nodeIf.stmts.stmts = block.result;
+                    block.outer.known.entrySet().removeIf(entry -> !entry.getValue().equals(block.known.get(entry.getKey())));
+                    block.outer.result.add(block.nodeIf);
+                }
+                continue;
+            }
+            AbstractSyntaxTree.NodeStmt stmt = block.stmts.get(block.next++);
+            if (stmt instanceof AbstractSyntaxTree.NodeSet) {
+                AbstractSyntaxTree.NodeSet set = (AbstractSyntaxTree.NodeSet) stmt;
+                block.known.put(set.id.name, set.literal.value);
+                block.result.add(set);
+            } else if (stmt instanceof AbstractSyntaxTree.NodeCalc) {
+                block.result.add(foldCalc((AbstractSyntaxTree.NodeCalc) stmt, block.known));
+            } else if (stmt instanceof AbstractSyntaxTree.NodeIf) {
+                Block inner = foldIf((AbstractSyntaxTree.NodeIf) stmt, block);
+                if (inner != null) {
+                    blocks.push(inner);
+                }
+            } else {
+                block.result.add(stmt);
+            }
+        }
+        return outermost.result;
+    }
+
+    // Statements being folded into result, with the values known at this point
+    private static class Block {
+        final List<AbstractSyntaxTree.NodeStmt> stmts;
+        final List<AbstractSyntaxTree.NodeStmt> result;
+        final Map<String, Integer> known;
+        final AbstractSyntaxTree.NodeIf nodeIf;  // Undecided if owning these statements, or null
+        final Block outer;                       // Block around nodeIf
+        int next;
+
+        Block(List<AbstractSyntaxTree.NodeStmt> stmts, List<AbstractSyntaxTree.NodeStmt> result,
+              Map<String, Integer> known, AbstractSyntaxTree.NodeIf nodeIf, Block outer) {
+            this.stmts = stmts;
+            this.result = result;
+            this.known = known;
+            this.nodeIf = nodeIf;
+            this.outer = outer;
+        }
+    }
+
+    private AbstractSyntaxTree.NodeStmt foldCalc(AbstractSyntaxTree.NodeCalc calc, Map<String, Integer> known) {
+        List<AbstractSyntaxTree.NodeExpr> terms = AbstractSyntaxTree.sumTerms(calc.expr);
+        List<AbstractSyntaxTree.NodeExpr> unknown = new ArrayList<>();
+        int constant = 0;
+        int literals = 0;
+        int knownVariables = 0;
+        for (AbstractSyntaxTree.NodeExpr term : terms) {
+            if (term instanceof AbstractSyntaxTree.NodeIntLiteral) {
+                constant += ((AbstractSyntaxTree.NodeIntLiteral) term).value;
+                literals++;
+            } else {
+                Integer value = known.get(((AbstractSyntaxTree.NodeId) term).name);
+                if (value != null) {
+                    constant += value;
+                    knownVariables++;
+                } else {
+                    unknown.add(term);
+                }
+            }
+        }
+
+        if (unknown.isEmpty()) {
+            // Every term is known, so this is just a set
+            known.put(calc.id.name, constant);
+            report.calcsToSets++;
+            return ast.new NodeSet(calc.id, ast.new NodeIntLiteral(constant));
+        }
+
+        known.remove(calc.id.name);
+        if (knownVariables == 0 && literals < 2) {
+            return calc; // Nothing to combine
+        }
+        if (constant != 0) {
+            unknown.add(ast.new NodeIntLiteral(constant));
+        }
+        report.foldedCalcs++;
+        return ast.new NodeCalc(calc.id, ast.sumOf(unknown));
+    }
+
+    /**
+     * Decides an if if it can. Returns the block still to fold for it, or null
+     * when the if was dropped.
+     */
+    private Block foldIf(AbstractSyntaxTree.NodeIf nodeIf, Block block) {
+        Integer left = block.known.get(nodeIf.left.name);
+        Integer right = block.known.get(nodeIf.right.name);
+        boolean sameVariable = nodeIf.left.name.equals(nodeIf.right.name);
+
+        if (sameVariable || (left != null && right != null)) {
+            report.decidedIfs++;
+            if (sameVariable || left.intValue() == right.intValue()) {
+                // Always taken, keep the block inline
+                return new Block(nodeIf.stmts.stmts, block.result, block.known, null, null);
+            }
+            report.removedStatements += nodeIf.stmts.stmts.size(); // Never taken, drop the block
+            return null;
+        }
+
+        List<AbstractSyntaxTree.NodeStmt> stmts = nodeIf.stmts.stmts;
+        return new Block(stmts, new ArrayList<>(stmts.size()), new HashMap<>(block.known), nodeIf, block);
+    }
+}
@@ -0,0 +1,151 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DeadCodeEliminator Class
+ *
+ * Liveness based pass over a PseudoProgram. A storeintvar is dead when the variable
+ * is stored again or the program ends before anything reads it, and a register
+ * write is dead when nothing reads the register afterwards. Dead instructions are
+ * removed together with the loadintliteral/add chains that only fed them, then
+ * declarations that no instruction mentions any more are dropped.
+ *
+ * Generated code only branches forward, so one backward walk sees every label
+ * before the branches that jump to it.
+ */
+public class DeadCodeEliminator {
+
+    /**
+     * Counts of what the pass removed.
+     */
+    public static class Report {
+        int removedInstructions;
+        int removedStores;
+        int removedDeclarations;
+
+        public int getRemovedInstructions() {
+            return removedInstructions;
+        }
+
+        public int getRemovedStores() {
+            return removedStores;
+        }
+
+        public int getRemovedDeclarations() {
+            return removedDeclarations;
+        }
+
+        @Override
+        public String toString() {
+            return "Dead code elimination: " + removedInstructions + " instructions removed (" + removedStores
+                    + " stores), " + removedDeclarations + " declarations removed";
+        }
+    }
+
+    /**
+     * Removes dead instructions and unused declarations from the program in place.
+     * @param program
+     * @return Report
+     */
+    public Report eliminate(PseudoProgram program) {
+        Report report = new Report();
+        List<Instruction> code = program.code;
+        boolean[] keep = new boolean[code.size()];
+
+        Set<String> liveRegisters = new HashSet<>();
+        Set<String> liveVariables = new HashSet<>();
+        Map<String, Set<String>> registersAtLabel = new HashMap<>();
+        Map<String, Set<String>> variablesAtLabel = new HashMap<>();
+
+        for (int i = code.size() - 1; i >= 0; i--) {
+            Instruction instruction = code.get(i);
+
+            if (instruction.isLabel()) {
+                // Whatever is live here is live wherever a branch jumps to this label
+                registersAtLabel.put(instruction.getLabel(), new HashSet<>(liveRegisters));
+                variablesAtLabel.put(instruction.getLabel(), new HashSet<>(liveVariables));
+                keep[i] = true;
+                continue;
+            }
+
+            if (instruction.isBranch()) {
+                Set<String> targetRegisters = registersAtLabel.getOrDefault(instruction.getLabel(), Collections.emptySet());
+                Set<String> targetVariables = variablesAtLabel.getOrDefault(instruction.getLabel(), Collections.emptySet());
+                if (instruction.opcode.equals("branch")) {
+                    liveRegisters = new HashSet<>(targetRegisters);  // No fall through
+                    liveVariables = new HashSet<>(targetVariables);
+                } else {
+                    liveRegisters.addAll(targetRegisters);
+                    liveVariables.addAll(targetVariables);
+                }
+                addUses(instruction, liveRegisters, liveVariables);
+                keep[i] = true;
+                continue;
+            }
+
+            if (isDead(instruction, liveRegisters, liveVariables)) {
+                report.removedInstructions++;
+                if (instruction.opcode.equals("storeintvar")) {
+                    report.removedStores++;
+                }
+                continue;
+            }
+
+            // Live: what it writes is no longer live above it, what it reads is
+            int def = instruction.defIndex();
+            if (def >= 0) {
+                liveRegisters.remove(instruction.operands[def]);
+            }
+            if (instruction.opcode.equals("storeintvar")) {
+                liveVariables.remove(instruction.getVariable());
+            }
+            addUses(instruction, liveRegisters, liveVariables);
+            keep[i] = true;
+        }
+
+        List<Instruction> kept = new ArrayList<>(code.size() - report.removedInstructions);
+        Set<String> mentioned = new HashSet<>();
+        for (int i = 0; i < code.size(); i++) {
+            if (keep[i]) {
+                kept.add(code.get(i));
+                String variable = code.get(i).getVariable();
+                if (variable != null) {
+                    mentioned.add(variable);
+                }
+            }
+        }
+        program.code = kept;
+
+        int declarations = program.variables.size();
+        program.variables.removeIf(variable -> !mentioned.contains(variable));
+        report.removedDeclarations = declarations - program.variables.size();
+        return report;
+    }
+
+    // Instructions without side effects whose result nobody reads
+    private boolean isDead(Instruction instruction, Set<String> liveRegisters, Set<String> liveVariables) {
+        if (instruction.opcode.equals("storeintvar")) {
+            return !liveVariables.contains(instruction.getVariable());
+        }
+        int def = instruction.defIndex();
+        return def >= 0 && !liveRegisters.contains(instruction.operands[def]);
+    }
+
+    private void addUses(Instruction instruction, Set<String> liveRegisters, Set<String> liveVariables) {
+        for (int i = 0; i < instruction.operands.length; i++) {
+            if (instruction.isUse(i)) {
+                liveRegisters.add(instruction.operands[i]);
+            }
+        }
+        if (!instruction.opcode.equals("storeintvar") && instruction.getVariable() != null) {
+            liveVariables.add(instruction.getVariable());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.example;
+
+/**
+ * Diagnostics Interface
+ *
+ * Receives the messages the compiler reports while it works. Callers pick how much
+ * they want to hear with a Level, and producers check the level before building
+ * a message so nothing is formatted for a silent sink.
+ */
+public interface Diagnostics {
+
+    enum Level {
+        OFF,     // Report nothing
+        ERRORS,  // Report errors only
+        TRACE    // Report errors and a line for every step, such as each matched token
+    }
+
+    /**
+     * A sink that drops everything. This is the default for library use.
+     */
+    Diagnostics SILENT = new Diagnostics() {
+        @Override
+        public Level getLevel() {
+            return Level.OFF;
+        }
+
+        @Override
+        public void error(String message) {
+        }
+
+        @Override
+        public void trace(String message) {
+        }
+    };
+
+    /**
+     * Returns the level this sink reports at.
+     * @return Level
+     */
+    Level getLevel();
+
+    /**
+     * Reports an error. Only called when the level is ERRORS or TRACE.
+     * @param message
+     */
+    void error(String message);
+
+    /**
+     * Reports a trace message. Only called when the level is TRACE.
+     * @param message
+     */
+    void trace(String message);
+
+    /**
+     * Returns true if error messages should be reported.
+     * @return boolean
+     */
+    default boolean isErrorEnabled() {
+        return getLevel().compareTo(Level.ERRORS) >= 0;
+    }
+
+    /**
+     * Returns true if trace messages should be reported.
+     * @return boolean
+     */
+    default boolean isTraceEnabled() {
+        return getLevel() == Level.TRACE;
+    }
+}
@@ -0,0 +1,340 @@
+package org.example;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * FlatAst Class
+ *
+ * Compact form of the AST for large programs. Nodes are indexes into parallel int
+ * arrays instead of objects, so a node costs five ints and no header, outer
+ * reference or list. Variables are stored once in a symbol table and nodes refer
+ * to them by index. Statements in a block are chained through next.
+ *
+ * What the fields of a node hold, by kind:
+ *   ID          a = symbol
+ *   INTLITERAL  a = value
+ *   PLUS        a = left node, b = right node
+ *   PRINT       a = symbol
+ *   SET         a = symbol, b = value
+ *   CALC        a = symbol, b = expression node
+ *   IF          a = left symbol, b = right symbol, c = first statement of the block
+ *
+ * Built by FlatParser. getCode() gives the same pseudo assembly as
+ * AbstractSyntaxTree.getCode(), and toAbstractSyntaxTree() converts it for the
+ * passes that work on the object tree.
+ */
+public class FlatAst {
+    static final int ID = 0;
+    static final int INTLITERAL = 1;
+    static final int PLUS = 2;
+    static final int PRINT = 3;
+    static final int SET = 4;
+    static final int CALC = 5;
+    static final int IF = 6;
+
+    static final int NONE = -1;  // No node
+
+    private int[] kind = new int[64];
+    private int[] a = new int[64];
+    private int[] b = new int[64];
+    private int[] c = new int[64];
+    private int[] next = new int[64];  // Next statement in the same block
+    private int size;
+
+    private final SymbolInterner symbols = new SymbolInterner();
+    private int[] decls = new int[16];  // Declared symbols, in order
+    private int declCount;
+    private int firstStmt = NONE;
+
+    // Building, used by FlatParser
+
+    int add(int nodeKind, int first, int second, int third) {
+        if (size == kind.length) {
+            int capacity = size * 2;
+            kind = Arrays.copyOf(kind, capacity);
+            a = Arrays.copyOf(a, capacity);
+            b = Arrays.copyOf(b, capacity);
+            c = Arrays.copyOf(c, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        kind[size] = nodeKind;
+        a[size] = first;
+        b[size] = second;
+        c[size] = third;
+        next[size] = NONE;
+        return size++;
+    }
+
+    // Returns the index of a variable name, adding it the first time it is seen
+    int symbol(String name) {
+        return symbols.intern(name);
+    }
+
+    // Where FlatParser has the scanner intern names, so symbols are IDs in it
+    SymbolInterner getSymbols() {
+        return symbols;
+    }
+
+    void declare(int symbol) {
+        if (declCount == decls.length) {
+            decls = Arrays.copyOf(decls, declCount * 2);
+        }
+        decls[declCount++] = symbol;
+    }
+
+    void setNext(int stmt, int nextStmt) {
+        next[stmt] = nextStmt;
+    }
+
+    void setBlock(int ifNode, int first) {
+        c[ifNode] = first;
+    }
+
+    void setFirstStmt(int stmt) {
+        firstStmt = stmt;
+    }
+
+    // Reading
+
+    public int getNodeCount() {
+        return size;
+    }
+
+    public int getSymbolCount() {
+        return symbols.size();
+    }
+
+    public String getSymbol(int symbol) {
+        return symbols.name(symbol);
+    }
+
+    /**
+     * Returns the declared variables in the same form as MyParser.getSymbolTable().
+     * @return Variable name -> SymbolTableItem
+     */
+    public Map<String, SymbolTableItem> getSymbolTable() {
+        Map<String, SymbolTableItem> table = new HashMap<>();
+        for (int i = 0; i < declCount; i++) {
+            String name = symbols.name(decls[i]);
+            table.put(name, new SymbolTableItem(name, MyParser.TYPE.INTDATATYPE));
+        }
+        return Map.copyOf(table);
+    }
+
+    /**
+     * Returns roughly how many bytes the node and declaration arrays take up.
+     * @return long
+     */
+    public long getArrayBytes() {
+        return 4L * (kind.length + a.length + b.length + c.length + next.length + decls.length);
+    }
+
+    /**
+     * Generates pseudo assembly, line for line the same as AbstractSyntaxTree.getCode()
+     * without value numbering.
+     * @return String
+     */
+    public String getCode() {
+        StringBuilder code = new StringBuilder(size * 24);
+        generateCode(CodeEmitter.of(code));
+        return code.toString();
+    }
+
+    /**
+     * Generates the same code as getCode() into out. Blocks and sums are walked with
+     * explicit stacks, and registers are plain ints until they are written.
+     * @param out
+     */
+    public void generateCode(CodeEmitter out) {
+        VariableLocations locations = new VariableLocations();  // Register holding each variable in the current block
+        int nextRegister = 1;
+
+        out.instruction(".data");
+        for (int i = 0; i < declCount; i++) {
+            out.instruction("var int").operand(symbols.name(decls[i]));
+        }
+        out.instruction("\n.code");
+
+        Deque<int[]> openIfs = new ArrayDeque<>();  // {if node, label number}
+        int[] work = new int[16];      // Sum nodes still to visit; -1 marks an add
+        int[] registers = new int[16]; // Registers of finished operands, 0 for none
+        int stmt = firstStmt;
+        while (true) {
+            while (stmt == NONE && !openIfs.isEmpty()) {
+                int[] openIf = openIfs.pop();
+                out.label(openIf[1]);
+                locations.join();
+                stmt = next[openIf[0]];
+            }
+            if (stmt == NONE) {
+                break;
+            }
+            switch (kind[stmt]) {
+                case PRINT: {
+                    int register = load(out, locations, a[stmt], nextRegister);
+                    if (register == nextRegister) {
+                        nextRegister++;
+                    }
+                    out.instruction("printi").register(register);
+                    break;
+                }
+                case SET:
+                    out.instruction("loadintliteral").register(nextRegister).operand(b[stmt]);
+                    out.instruction("storeintvar").register(nextRegister).operand(symbols.name(a[stmt]));
+                    locations.set(a[stmt], nextRegister++);
+                    break;
+                case CALC: {
+                    // Postorder over the sum: left, right, then the add
+                    int workSize = 0;
+                    int registerCount = 0;
+                    work[workSize++] = b[stmt];
+                    while (workSize > 0) {
+                        int node = work[--workSize];
+                        if (workSize + 3 > work.length) {
+                            work = Arrays.copyOf(work, work.length * 2);
+                        }
+                        if (registerCount + 1 > registers.length) {
+                            registers = Arrays.copyOf(registers, registers.length * 2);
+                        }
+                        if (node < 0) {
+                            int right = registers[--registerCount];
+                            int left = registers[--registerCount];
+                            out.instruction("add").register(left).register(right).register(nextRegister);
+                            registers[registerCount++] = nextRegister++;
+                        } else if (kind[node] == PLUS) {
+                            work[workSize++] = -1;
+                            work[workSize++] = b[node];
+                            work[workSize++] = a[node];
+                        } else if (kind[node] == INTLITERAL) {
+                            out.instruction("loadintliteral").register(nextRegister).operand(a[node]);
+                            registers[registerCount++] = nextRegister++;
+                        } else {
+                            int register = load(out, locations, a[node], nextRegister);
+                            if (register == nextRegister) {
+                                nextRegister++;
+                            }
+                            registers[registerCount++] = register;
+                        }
+                    }
+                    int result = registers[0];
+                    out.instruction("storeintvar").register(result).operand(symbols.name(a[stmt]));
+                    locations.set(a[stmt], result);
+                    break;
+                }
+                case IF: {
+                    int left = load(out, locations, a[stmt], nextRegister);
+                    if (left == nextRegister) {
+                        nextRegister++;
+                    }
+                    int right = load(out, locations, b[stmt], nextRegister);
+                    if (right == nextRegister) {
+                        nextRegister++;
+                    }
+                    int label = out.getLineCount() + 1;
+                    out.instruction("bne").register(left).register(right).labelOperand(label);
+                    locations.branch();
+                    openIfs.push(new int[] {stmt, label});
+                    stmt = c[stmt];
+                    continue;
+                }
+                default:
+                    throw new IllegalStateException("Not a statement: node " + stmt);
+            }
+            stmt = next[stmt];
+        }
+    }
+
+    // Returns the register holding a variable. If none does, loads it into
+    // nextRegister, which the caller then counts as used.
+    private int load(CodeEmitter out, VariableLocations locations, int symbol, int nextRegister) {
+        int register = locations.registerOf(symbol);
+        if (register == 0) {
+            out.instruction("loadintvar").register(nextRegister).operand(symbols.name(symbol));
+            locations.set(symbol, nextRegister);
+            return nextRegister;
+        }
+        return register;
+    }
+
+    /**
+     * Builds the equivalent object tree, for the passes that work on it.
+     * @return AbstractSyntaxTree
+     */
+    public AbstractSyntaxTree toAbstractSyntaxTree() {
+        AbstractSyntaxTree ast = new AbstractSyntaxTree(symbols);  // Same IDs in both
+        AbstractSyntaxTree.NodeDecls nodeDecls = ast.new NodeDecls();
+        for (int i = 0; i < declCount; i++) {
+            nodeDecls.addDecl(ast.new NodeId(decls[i]));
+        }
+
+        // Blocks still being filled, with the if each belongs to
+        Deque<AbstractSyntaxTree.NodeStmts> blocks = new ArrayDeque<>();
+        Deque<Integer> openIfs = new ArrayDeque<>();
+        AbstractSyntaxTree.NodeStmts stmts = ast.new NodeStmts();
+        int stmt = firstStmt;
+        while (true) {
+            while (stmt == NONE && !openIfs.isEmpty()) {
+                int ifNode = openIfs.pop();
+                AbstractSyntaxTree.NodeStmts outer = blocks.pop();
+                outer.addStmt(ast.new NodeIf(ast.new NodeId(a[ifNode]),
+                        ast.new NodeId(b[ifNode]), stmts));
+                stmts = outer;
+                stmt = next[ifNode];
+            }
+            if (stmt == NONE) {
+                break;
+            }
+            AbstractSyntaxTree.NodeId id = ast.new NodeId(a[stmt]);
+            switch (kind[stmt]) {
+                case PRINT:
+                    stmts.addStmt(ast.new NodePrint(id));
+                    break;
+                case SET:
+                    stmts.addStmt(ast.new NodeSet(id, ast.new NodeIntLiteral(b[stmt])));
+                    break;
+                case CALC:
+                    stmts.addStmt(ast.new NodeCalc(id, toExpr(ast, b[stmt])));
+                    break;
+                case IF:
+                    openIfs.push(stmt);
+                    blocks.push(stmts);
+                    stmts = ast.new NodeStmts();
+                    stmt = c[stmt];
+                    continue;
+                default:
+                    throw new IllegalStateException("Not a statement: node " + stmt);
+            }
+            stmt = next[stmt];
+        }
+        ast.setRoot(ast.new NodeProgram(nodeDecls, stmts));
+        return ast;
+    }
+
+    // Converts a sum, children first, with an explicit stack
+    private AbstractSyntaxTree.NodeExpr toExpr(AbstractSyntaxTree ast, int root) {
+        Deque<Integer> work = new ArrayDeque<>();
+        Deque<AbstractSyntaxTree.NodeExpr> done = new ArrayDeque<>();
+        work.push(root);
+        while (!work.isEmpty()) {
+            int node = work.pop();
+            if (node < 0) {
+                AbstractSyntaxTree.NodeExpr right = done.pop();
+                AbstractSyntaxTree.NodeExpr left = done.pop();
+                done.push(ast.new NodePlus(left, right));
+            } else if (kind[node] == PLUS) {
+                work.push(-1);  // Combine once both sides are done
+                work.push(b[node]);
+                work.push(a[node]);
+            } else if (kind[node] == INTLITERAL) {
+                done.push(ast.new NodeIntLiteral(a[node]));
+            } else {
+                done.push(ast.new NodeId(a[node]));
+            }
+        }
+        return done.pop();
+    }
+}
@@ -0,0 +1,197 @@
+package org.example;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * FlatParser Class
+ *
+ * Parses the same language as MyParser but builds a FlatAst directly, with no
+ * node objects. Sums and nested if blocks are parsed in loops, so the thread stack
+ * does not grow with the input.
+ */
+public class FlatParser {
+    private final Diagnostics diagnostics;
+    private MyScanner scanner;
+    private MyScanner.TOKEN nextToken;
+    private FlatAst ast;
+
+    public FlatParser() {
+        this(Diagnostics.SILENT);
+    }
+
+    public FlatParser(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    public FlatAst parse(String program) {
+        char[] chars = program.toCharArray();
+        return parse(new MyScanner(chars, 0, chars.length));
+    }
+
+    public FlatAst parse(CharBuffer program) {
+        return parse(new MyScanner(program));
+    }
+
+    /**
+     * Parses a whole program.
+     * @param scanner Scanner positioned at the start of the program.
+     * @return FlatAst, or null if the program does not parse
+     */
+    FlatAst parse(MyScanner scanner) {
+        try {
+            this.scanner = scanner;
+            this.ast = new FlatAst();
+            scanner.setSymbolInterner(ast.getSymbols());
+            nextToken = scanner.scan();
+            parseDecls();
+            parseStmts();
+            if (nextToken != MyScanner.TOKEN.SCANEOF) {
+                if (diagnostics.isErrorEnabled()) {
+                    diagnostics.error("Parse Error: Expected end of program");
+                }
+                return null;
+            }
+            if (diagnostics.isTraceEnabled()) {
+                diagnostics.trace("Parse Successful");
+            }
+            return ast;
+        } catch (Exception e) {
+            if (diagnostics.isErrorEnabled()) {
+                diagnostics.error("Parse Error: " + e.getMessage());
+            }
+            return null;
+        } finally {
+            this.scanner = null;
+        }
+    }
+
+    private void parseDecls() throws Exception {
+        BitSet declared = new BitSet();  // By symbol ID
+        while (nextToken == MyScanner.TOKEN.DECLARE) {
+            match(MyScanner.TOKEN.DECLARE);
+            int symbol = parseSymbol();
+            if (declared.get(symbol)) {
+                if (diagnostics.isErrorEnabled()) {
+                    diagnostics.error("Parse Error: Variable '" + ast.getSymbol(symbol) + "' already declared.");
+                }
+                throw new Exception("Duplicate declaration");
+            }
+            declared.set(symbol);
+            ast.declare(symbol);
+        }
+    }
+
+    // Parses statements up to the end of the program. Open ifs are kept on a stack;
+    // at endif the if itself is the last statement of the block around it.
+    private void parseStmts() throws Exception {
+        int[] openIfs = new int[16];     // If nodes whose block is being parsed
+        int depth = 0;
+        int last = FlatAst.NONE;         // Last statement of the current block, NONE if it is empty
+        while (true) {
+            int stmt;
+            boolean opensBlock = false;
+            if (nextToken == MyScanner.TOKEN.PRINT) {
+                match(MyScanner.TOKEN.PRINT);
+                stmt = ast.add(FlatAst.PRINT, parseSymbol(), 0, 0);
+            } else if (nextToken == MyScanner.TOKEN.SET) {
+                match(MyScanner.TOKEN.SET);
+                int symbol = parseSymbol();
+                match(MyScanner.TOKEN.EQUALS);
+                int value = nextToken == MyScanner.TOKEN.INTLITERAL ? scanner.getTokenIntValue() : 0;
+                match(MyScanner.TOKEN.INTLITERAL);
+                stmt = ast.add(FlatAst.SET, symbol, value, 0);
+            } else if (nextToken == MyScanner.TOKEN.CALC) {
+                match(MyScanner.TOKEN.CALC);
+                int symbol = parseSymbol();
+                match(MyScanner.TOKEN.EQUALS);
+                stmt = ast.add(FlatAst.CALC, symbol, parseSum(), 0);
+            } else if (nextToken == MyScanner.TOKEN.IF) {
+                match(MyScanner.TOKEN.IF);
+                int left = parseSymbol();
+                match(MyScanner.TOKEN.EQUALS);
+                int right = parseSymbol();
+                match(MyScanner.TOKEN.THEN);
+                stmt = ast.add(FlatAst.IF, left, right, FlatAst.NONE);
+                opensBlock = true;
+            } else if (depth > 0) {
+                // Close the innermost if and continue the block around it
+                match(MyScanner.TOKEN.ENDIF);
+                last = openIfs[--depth];
+                continue;
+            } else {
+                return;
+            }
+
+            // Link the statement into the current block
+            if (last != FlatAst.NONE) {
+                ast.setNext(last, stmt);
+            } else if (depth == 0) {
+                ast.setFirstStmt(stmt);
+            } else {
+                ast.setBlock(openIfs[depth - 1], stmt);
+            }
+            last = stmt;
+
+            if (opensBlock) {
+                if (depth == openIfs.length) {
+                    openIfs = Arrays.copyOf(openIfs, depth * 2);
+                }
+                openIfs[depth++] = stmt;
+                last = FlatAst.NONE;
+            }
+        }
+    }
+
+    // Parses <Value> { "+" <Value> } into a right-leaning chain of PLUS nodes
+    private int parseSum() throws Exception {
+        int[] terms = new int[8];
+        int count = 0;
+        do {
+            if (count > 0) {
+                match(MyScanner.TOKEN.PLUS);
+            }
+            if (count == terms.length) {
+                terms = Arrays.copyOf(terms, count * 2);
+            }
+            terms[count++] = parseValue();
+        } while (nextToken == MyScanner.TOKEN.PLUS);
+
+        int sum = terms[count - 1];
+        for (int i = count - 2; i >= 0; i--) {
+            sum = ast.add(FlatAst.PLUS, terms[i], sum, 0);
+        }
+        return sum;
+    }
+
+    private int parseValue() throws Exception {
+        if (nextToken == MyScanner.TOKEN.INTLITERAL) {
+            int value = scanner.getTokenIntValue();
+            match(MyScanner.TOKEN.INTLITERAL);
+            return ast.add(FlatAst.INTLITERAL, value, 0, 0);
+        }
+        return ast.add(FlatAst.ID, parseSymbol(), 0, 0);
+    }
+
+    private int parseSymbol() throws Exception {
+        int symbol = scanner.getTokenSymbol();  // Interned by the scanner
+        match(MyScanner.TOKEN.ID);
+        return symbol;
+    }
+
+    // Same as MyParser.match
+    private void match(MyScanner.TOKEN expectedToken) throws Exception {
+        if (nextToken == expectedToken) {
+            if (diagnostics.isTraceEnabled()) {
+                diagnostics.trace("Matched: " + expectedToken + " (" + scanner.getTokenBufferString() + ")");
+            }
+            nextToken = scanner.scan();
+        } else {
+            if (diagnostics.isErrorEnabled()) {
+                diagnostics.error("Parse Error: Expected " + expectedToken + " but got " + nextToken);
+            }
+            throw new Exception("Unexpected token");
+        }
+    }
+}
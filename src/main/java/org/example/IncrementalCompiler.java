@@ -0,0 +1,320 @@
+package org.example;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IncrementalCompiler Class
+ *
+ * Compiles successive versions of one source file to pseudo assembly, reusing as
+ * much of the previous compile as it can. It keeps the offset, AST and code of every
+ * top-level statement (an if counts as one, with its whole block). On a new version
+ * only the top-level statements the edit touches are parsed again; everything
+ * before and after them is kept. The code of a kept statement is reused when the
+ * line it starts at (if it holds a label), the next free register (if it loads
+ * anything) and the registers of its variables are the same as last time, so an
+ * edit that keeps the shape of the code leaves the rest of the output untouched.
+ * Otherwise the statement is generated again from its kept AST, without parsing.
+ *
+ * The output is always the same as MyParser followed by AbstractSyntaxTree.getCode().
+ * Edits that touch the declarations, or leave an if or endif unmatched within the
+ * edited statements, fall back to a full parse.
+ */
+public class IncrementalCompiler {
+    private final MyParser parser;                          // Full parses, reports errors
+    private final MyParser regionParser = new MyParser();  // Edited statements only, silent since a failure means a full parse
+
+    private char[] source;         // The last version compiled, null if it did not parse
+    private AbstractSyntaxTree tree;
+    private String header;         // .data section and the start of .code
+    private int headerLines;
+    private int headerEnd;         // Offset of the first statement, or the end of the source
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    // What the last compile did
+    private boolean fullParse;
+    private int reparsed;
+    private int regenerated;
+
+    // A top-level statement and the code generated for it
+    private static class Chunk {
+        int start;                             // Offset of the statement's first token
+        final AbstractSyntaxTree.NodeStmt stmt;
+        final boolean hasLabel;                // Its code holds a label, so it depends on the line it starts at
+        final int[] variables;                 // Symbol IDs of the variables it reads or writes
+        int[] entryRegisters;                  // Register of each variable before the statement, 0 for none
+        int[] exitRegisters;                   // and after it
+        int entryLine;
+        int entryRegister;
+        int exitRegister;
+        String code;                           // null until generated
+        int lineCount;                         // Lines in code
+
+        Chunk(int start, AbstractSyntaxTree.NodeStmt stmt) {
+            this.start = start;
+            this.stmt = stmt;
+            this.hasLabel = stmt instanceof AbstractSyntaxTree.NodeIf;
+            this.variables = AbstractSyntaxTree.variablesOf(stmt);
+        }
+
+        // True if the code from last time is still right after line lines with the tree's registers
+        boolean canReuse(int line, int register, AbstractSyntaxTree tree) {
+            if (code == null || (hasLabel && line != entryLine)) {
+                return false;
+            }
+            if (exitRegister != entryRegister && register != entryRegister) {
+                return false;  // It loads into registers, which would now be numbered differently
+            }
+            for (int i = 0; i < variables.length; i++) {
+                if (tree.registerOf(variables[i]) != entryRegisters[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Updates the registers as generating the statement would have
+        void reuse(int line, int register, AbstractSyntaxTree tree) {
+            for (int i = 0; i < variables.length; i++) {
+                tree.setRegister(variables[i], exitRegisters[i]);  // 0 where an if body left it in different registers
+            }
+            exitRegister = register + (exitRegister - entryRegister);
+            entryRegister = register;
+            entryLine = line;
+        }
+
+        void generate(AbstractSyntaxTree tree, int line, int register) {
+            entryRegisters = lookup(tree);
+            StringBuilder text = new StringBuilder();
+            CodeEmitter out = CodeEmitter.of(text).startAt(line);
+            tree.generateStmt(stmt, out, register);
+            code = text.toString();
+            lineCount = out.getLineCount() - line;
+            exitRegisters = lookup(tree);
+            entryLine = line;
+            entryRegister = register;
+            exitRegister = tree.getNextIntRegister();
+        }
+
+        private int[] lookup(AbstractSyntaxTree tree) {
+            int[] found = new int[variables.length];
+            for (int i = 0; i < variables.length; i++) {
+                found[i] = tree.registerOf(variables[i]);
+            }
+            return found;
+        }
+    }
+
+    /**
+     * Creates a compiler that reports nothing.
+     */
+    public IncrementalCompiler() {
+        this(Diagnostics.SILENT);
+    }
+
+    /**
+     * Creates a compiler that reports parse errors and traces of full parses to diagnostics.
+     * @param diagnostics
+     */
+    public IncrementalCompiler(Diagnostics diagnostics) {
+        this.parser = new MyParser(diagnostics);
+    }
+
+    public String compile(String program) {
+        return compile(program.toCharArray());
+    }
+
+    public String compile(CharBuffer program) {
+        char[] chars = new char[program.remaining()];
+        program.duplicate().get(chars);
+        return compile(chars);
+    }
+
+    /**
+     * Compiles a new version of the source, using what is left of the last one.
+     * @param program The whole new source. The array is kept, so it must not be changed afterwards.
+     * @return The pseudo assembly, or null if the program does not parse
+     * @throws RuntimeException from a compiler bug, after which the next version is parsed in full
+     */
+    private String compile(char[] program) {
+        fullParse = false;
+        reparsed = 0;
+        regenerated = 0;
+        try {
+            if (source == null || !reparse(program)) {
+                if (!parseAll(program)) {
+                    forget();
+                    return null;
+                }
+            }
+            source = program;
+            return generate();
+        } catch (RuntimeException e) {
+            forget();  // What is kept may be half updated, so the next version is parsed in full
+            throw e;
+        }
+    }
+
+    // Drops everything kept from earlier versions
+    private void forget() {
+        source = null;
+        tree = null;
+        chunks.clear();
+    }
+
+    // Parses the whole program and drops everything kept from earlier versions
+    private boolean parseAll(char[] program) {
+        fullParse = true;
+        tree = new AbstractSyntaxTree();
+        List<AbstractSyntaxTree.NodeStmt> stmts = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        AbstractSyntaxTree.NodeDecls decls = parser.parseTopLevel(new MyScanner(program, 0, program.length),
+                tree, true, stmts, starts);
+        if (decls == null) {
+            return false;
+        }
+        StringBuilder text = new StringBuilder();
+        CodeEmitter out = CodeEmitter.of(text);
+        tree.generateHeader(decls, out);
+        header = text.toString();
+        headerLines = out.getLineCount();
+        headerEnd = starts.isEmpty() ? program.length : starts.get(0);
+        chunks.clear();
+        for (int i = 0; i < stmts.size(); i++) {
+            chunks.add(new Chunk(starts.get(i), stmts.get(i)));
+        }
+        reparsed = stmts.size();
+        return true;
+    }
+
+    // Parses only the top-level statements the edit touches. Returns false if a full parse is needed.
+    private boolean reparse(char[] program) {
+        int oldLength = source.length;
+        int newLength = program.length;
+        int shortest = Math.min(oldLength, newLength);
+        int prefix = 0;
+        while (prefix < shortest && source[prefix] == program[prefix]) {
+            prefix++;
+        }
+        if (prefix == oldLength && prefix == newLength) {
+            return true;  // Nothing changed
+        }
+        int suffix = 0;
+        while (suffix < shortest - prefix && source[oldLength - 1 - suffix] == program[newLength - 1 - suffix]) {
+            suffix++;
+        }
+        if (prefix <= headerEnd) {
+            return false;  // The declarations may have changed
+        }
+
+        // From the statement the edit starts in to the first one starting after it ends.
+        // A statement starting right where the edit ends is included, as the edit may
+        // have joined a token onto it.
+        int editEnd = oldLength - suffix;
+        int first = lastChunkBefore(prefix);
+        int last = first;
+        while (last < chunks.size() && chunks.get(last).start <= editEnd) {
+            last++;
+        }
+        int shift = newLength - oldLength;
+        int regionStart = chunks.get(first).start;
+        int regionEnd = (last < chunks.size() ? chunks.get(last).start : oldLength) + shift;
+
+        List<AbstractSyntaxTree.NodeStmt> stmts = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        MyScanner scanner = new MyScanner(program, regionStart, regionEnd - regionStart);
+        if (regionParser.parseTopLevel(scanner, tree, false, stmts, starts) == null
+                || scanner.getTokenStart() != regionEnd) {
+            return false;  // Unmatched if or endif, or a character the scanner stops at
+        }
+
+        List<Chunk> replaced = chunks.subList(first, last);
+        replaced.clear();
+        for (int i = 0; i < stmts.size(); i++) {
+            replaced.add(new Chunk(starts.get(i), stmts.get(i)));
+        }
+        for (int i = first + stmts.size(); i < chunks.size(); i++) {
+            chunks.get(i).start += shift;
+        }
+        reparsed = stmts.size();
+        return true;
+    }
+
+    // Index of the last statement starting before offset; offset is past the header
+    private int lastChunkBefore(int offset) {
+        int low = 0;
+        int high = chunks.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (chunks.get(mid).start < offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    // Walks the statements in order, generating those whose code from last time no longer fits
+    private String generate() {
+        tree.clearRegisters();
+        int line = headerLines;
+        int register = 1;
+        int length = header.length();
+        for (Chunk chunk : chunks) {
+            if (chunk.canReuse(line, register, tree)) {
+                chunk.reuse(line, register, tree);
+            } else {
+                chunk.generate(tree, line, register);
+                regenerated++;
+            }
+            line += chunk.lineCount;
+            register = chunk.exitRegister;
+            length += chunk.code.length() + 1;
+        }
+
+        StringBuilder out = new StringBuilder(length);
+        out.append(header);
+        for (Chunk chunk : chunks) {
+            if (chunk.lineCount > 0) {
+                out.append('\n').append(chunk.code);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Returns true if the last compile parsed the whole program.
+     */
+    public boolean isFullParse() {
+        return fullParse;
+    }
+
+    /**
+     * Returns the number of top-level statements in the last version compiled.
+     */
+    public int getStatementCount() {
+        return chunks.size();
+    }
+
+    /**
+     * Returns how many top-level statements the last compile parsed.
+     */
+    public int getReparsedStatements() {
+        return reparsed;
+    }
+
+    /**
+     * Returns how many top-level statements the last compile generated code for.
+     */
+    public int getRegeneratedStatements() {
+        return regenerated;
+    }
+
+    @Override
+    public String toString() {
+        return (fullParse ? "Full parse: " : "Incremental parse: ") + reparsed + " of " + chunks.size()
+                + " statements parsed, " + regenerated + " generated";
+    }
+}
@@ -0,0 +1,182 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * Instruction Class
+ *
+ * One line of the .code section of a pseudo assembly program, split into its
+ * opcode and operands. Labels are stored with the opcode ":" and the label name
+ * as their only operand.
+ */
+public class Instruction {
+    static final String LABEL = ":";
+
+    String opcode;
+    String[] operands;
+
+    public Instruction(String opcode, String... operands) {
+        this.opcode = opcode;
+        this.operands = operands;
+    }
+
+    /**
+     * Parses a single line such as "add ri1, ri2, ri3" or ":label4".
+     * @param line
+     * @return Instruction
+     */
+    public static Instruction parse(String line) {
+        line = line.trim();
+        if (line.startsWith(LABEL)) {
+            return new Instruction(LABEL, line.substring(1).trim());
+        }
+        int space = line.indexOf(' ');
+        if (space < 0) {
+            return new Instruction(line);
+        }
+        String[] operands = line.substring(space + 1).split(",", -1);
+        for (int i = 0; i < operands.length; i++) {
+            operands[i] = operands[i].trim();
+        }
+        return new Instruction(line.substring(0, space), operands);
+    }
+
+    public String getOpcode() {
+        return opcode;
+    }
+
+    public String[] getOperands() {
+        return operands;
+    }
+
+    public boolean isLabel() {
+        return opcode.equals(LABEL);
+    }
+
+    public boolean isBranch() {
+        switch (opcode) {
+            case "branch":
+            case "bne":
+            case "be":
+            case "bgt":
+            case "blt":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the label a branch jumps to, or the name of a label.
+     * @return String
+     */
+    public String getLabel() {
+        return isLabel() ? operands[0] : operands[operands.length - 1];
+    }
+
+    /**
+     * Returns the index of the operand this instruction writes to a register, or -1.
+     * @return int
+     */
+    public int defIndex() {
+        switch (opcode) {
+            case "loadintliteral":
+            case "loadintvar":
+            case "inc":
+            case "dec":
+                return 0;
+            case "add":
+            case "sub":
+            case "mul":
+                return 2;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Returns true if operand i is a register this instruction reads.
+     * @param i
+     * @return boolean
+     */
+    public boolean isUse(int i) {
+        switch (opcode) {
+            case "storeintvar":
+            case "inc":
+            case "dec":
+                return i == 0;
+            case "add":
+            case "sub":
+            case "mul":
+            case "bne":
+            case "be":
+            case "bgt":
+            case "blt":
+            case "branch":
+                return i < 2;
+            case "printi":
+            case "print":
+                return i == 0 && isRegister(operands[0]);
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the variable this instruction reads or writes in memory, or null.
+     * @return String
+     */
+    public String getVariable() {
+        switch (opcode) {
+            case "loadintvar":
+            case "storeintvar":
+                return operands[1];
+            case "print":
+                return operands.length == 0 || isRegister(operands[0]) ? null : operands[0];
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns true if the operand names an integer register, such as "ri7".
+     * @param operand
+     * @return boolean
+     */
+    public static boolean isRegister(String operand) {
+        if (operand.length() < 3 || operand.charAt(0) != 'r' || operand.charAt(1) != 'i') {
+            return false;
+        }
+        for (int i = 2; i < operand.length(); i++) {
+            if (!Character.isDigit(operand.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Instruction)) {
+            return false;
+        }
+        Instruction other = (Instruction) o;
+        return opcode.equals(other.opcode) && Arrays.equals(operands, other.operands);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * opcode.hashCode() + Arrays.hashCode(operands);
+    }
+
+    @Override
+    public String toString() {
+        if (isLabel()) {
+            return LABEL + operands[0];
+        }
+        if (operands.length == 0) {
+            return opcode;
+        }
+        return opcode + " " + String.join(", ", operands);
+    }
+}
@@ -0,0 +1,309 @@
+package org.example;
+
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JvmBackend Class
+ *
+ * Compiles the AST straight to a JVM class, without rendering pseudo assembly text
+ * and parsing it again. The class has one method, public static void
+ * run(java.io.PrintStream), in which every variable is an int local, a calc is a
+ * chain of iadd and an if is an if_icmpne over its block.
+ */
+public class JvmBackend {
+    static final String PACKAGE = "org/example/";
+    static final String RUN_METHOD = "run";
+    static final String RUN_DESCRIPTOR = "(Ljava/io/PrintStream;)V";
+
+    private static final AtomicLong nextClassNumber = new AtomicLong(1);  // Unique class names across compiles
+
+    // Opcodes used by the generated code
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ISTORE = 0x36;
+    private static final int IADD = 0x60;
+    private static final int IF_ICMPNE = 0xa0;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int WIDE = 0xc4;
+
+    /**
+     * The generated class file.
+     */
+    public static class CompiledClass {
+        final String name;   // Binary name, e.g. org.example.GeneratedProgram3, or null for cached bytes
+        final byte[] bytes;
+
+        CompiledClass(String name, byte[] bytes) {
+            this.name = name;
+            this.bytes = bytes;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Defines the class in a new class loader of its own and runs it.
+         * @param out Where print statements write
+         * @throws Exception if the class cannot be defined or the program throws
+         */
+        public void run(PrintStream out) throws Exception {
+            invokeRun(new ProgramClassLoader().define(name, bytes), out);
+        }
+
+        /**
+         * Defines the class as a hidden class straight from the byte array and runs it.
+         * A hidden class has no name other code can find, so compiles never clash,
+         * and it is unloaded as soon as nothing refers to it.
+         * @param out Where print statements write
+         * @throws Exception if the class cannot be defined or the program throws
+         */
+        public void runHidden(PrintStream out) throws Exception {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            invokeRun(lookup.findStatic(lookup.lookupClass(), RUN_METHOD, RUN_TYPE), out);
+        }
+    }
+
+    private static final MethodType RUN_TYPE = MethodType.methodType(void.class, PrintStream.class);
+
+    static void invokeRun(MethodHandle run, PrintStream out) throws Exception {
+        try {
+            run.invokeExact(out);
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    // Loader for exactly one generated class, so the class can be unloaded with it
+    private static class ProgramClassLoader extends ClassLoader {
+        ProgramClassLoader() {
+            super(JvmBackend.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    static void invokeRun(Class<?> programClass, PrintStream out) throws Exception {
+        Method run = programClass.getMethod(RUN_METHOD, PrintStream.class);
+        try {
+            run.invoke(null, out);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private ClassFileWriter classFile;
+    private int[] locals;    // Symbol ID -> local slot, 0 until first used; slot 0 is the PrintStream
+    private int localCount;
+    private byte[] code;
+    private int length;
+    private int printlnRef;
+
+    /**
+     * Compiles the program held by ast to a class with a unique name.
+     * @param ast
+     * @return CompiledClass
+     * @throws IllegalStateException if the program is too large for one JVM method
+     */
+    public CompiledClass compile(AbstractSyntaxTree ast) {
+        String internalName = PACKAGE + "GeneratedProgram" + nextClassNumber.getAndIncrement();
+        classFile = new ClassFileWriter(internalName);
+        locals = new int[ast.getSymbols().size()];
+        localCount = 0;
+        code = new byte[256];
+        length = 0;
+        printlnRef = classFile.methodRef("java/io/PrintStream", "println", "(I)V");
+
+        AbstractSyntaxTree.NodeProgram root = ast.getRoot();
+        if (root != null) {
+            for (AbstractSyntaxTree.NodeId decl : root.decls.decls) {
+                local(decl);
+            }
+            compileStmts(root.stmts.stmts);
+        }
+        emit(RETURN);
+
+        // Every local starts at 0, so it is definitely assigned on all paths for the verifier
+        byte[] body = Arrays.copyOf(code, length);
+        code = new byte[body.length + localCount * 5];
+        length = 0;
+        for (int slot = 1; slot <= localCount; slot++) {
+            pushInt(0);
+            emitLocal(ISTORE, slot);
+        }
+        System.arraycopy(body, 0, code, length, body.length);
+        length += body.length;
+
+        classFile.addMethod(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC, RUN_METHOD, RUN_DESCRIPTOR,
+                2, 1 + localCount, code, length);
+        return new CompiledClass(internalName.replace('/', '.'), classFile.toByteArray());
+    }
+
+    // Walks the statements with a stack of the if blocks being compiled, so deep
+    // nesting does not recurse
+    private void compileStmts(List<AbstractSyntaxTree.NodeStmt> stmts) {
+        Deque<Block> blocks = new ArrayDeque<>();
+        blocks.push(new Block(stmts, -1));
+        while (!blocks.isEmpty()) {
+            Block block = blocks.peek();
+            if (block.next == block.stmts.size()) {
+                blocks.pop();
+                if (block.branch >= 0) {
+                    patchBranch(block.branch);
+                }
+                continue;
+            }
+            AbstractSyntaxTree.NodeStmt stmt = block.stmts.get(block.next++);
+            if (stmt instanceof AbstractSyntaxTree.NodeSet) {
+                AbstractSyntaxTree.NodeSet set = (AbstractSyntaxTree.NodeSet) stmt;
+                pushInt(set.literal.value);
+                emitLocal(ISTORE, local(set.id));
+            } else if (stmt instanceof AbstractSyntaxTree.NodeCalc) {
+                AbstractSyntaxTree.NodeCalc calc = (AbstractSyntaxTree.NodeCalc) stmt;
+                List<AbstractSyntaxTree.NodeExpr> terms = AbstractSyntaxTree.sumTerms(calc.expr);
+                pushTerm(terms.get(0));
+                for (int i = 1; i < terms.size(); i++) {
+                    pushTerm(terms.get(i));
+                    emit(IADD);
+                }
+                emitLocal(ISTORE, local(calc.id));
+            } else if (stmt instanceof AbstractSyntaxTree.NodePrint) {
+                emit(ALOAD_0);
+                emitLocal(ILOAD, local(((AbstractSyntaxTree.NodePrint) stmt).id));
+                emit(INVOKEVIRTUAL);
+                emitShort(printlnRef);
+            } else if (stmt instanceof AbstractSyntaxTree.NodeIf) {
+                AbstractSyntaxTree.NodeIf nodeIf = (AbstractSyntaxTree.NodeIf) stmt;
+                emitLocal(ILOAD, local(nodeIf.left));
+                emitLocal(ILOAD, local(nodeIf.right));
+                int branch = length;
+                emit(IF_ICMPNE);
+                emitShort(0);  // Patched once the end of the block is known
+                blocks.push(new Block(nodeIf.stmts.stmts, branch));
+            } else if (stmt instanceof AbstractSyntaxTree.NodeStmts) {
+                blocks.push(new Block(((AbstractSyntaxTree.NodeStmts) stmt).stmts, -1));
+            }
+        }
+    }
+
+    // Points the if_icmpne at branch to the current end of the code
+    private void patchBranch(int branch) {
+        int offset = length - branch;
+        if (offset > Short.MAX_VALUE) {
+            throw new IllegalStateException("if block is too large for a JVM branch");
+        }
+        code[branch + 1] = (byte) (offset >> 8);
+        code[branch + 2] = (byte) offset;
+    }
+
+    // Statements being compiled, and the branch to patch when they are done (-1 for none)
+    private static class Block {
+        final List<AbstractSyntaxTree.NodeStmt> stmts;
+        final int branch;
+        int next;
+
+        Block(List<AbstractSyntaxTree.NodeStmt> stmts, int branch) {
+            this.stmts = stmts;
+            this.branch = branch;
+        }
+    }
+
+    private void pushTerm(AbstractSyntaxTree.NodeExpr term) {
+        if (term instanceof AbstractSyntaxTree.NodeIntLiteral) {
+            pushInt(((AbstractSyntaxTree.NodeIntLiteral) term).value);
+        } else {
+            emitLocal(ILOAD, local((AbstractSyntaxTree.NodeId) term));
+        }
+    }
+
+    // Slot of a variable; names that were never declared still get one, holding 0
+    private int local(AbstractSyntaxTree.NodeId id) {
+        if (id.symbol >= locals.length) {
+            locals = Arrays.copyOf(locals, id.symbol + 1);  // A name interned after compile() started
+        }
+        int slot = locals[id.symbol];
+        if (slot == 0) {
+            slot = localCount + 1;
+            if (slot > 0xFFFF) {
+                throw new IllegalStateException("Too many variables for a JVM method");
+            }
+            locals[id.symbol] = slot;
+            localCount = slot;
+        }
+        return slot;
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            emit(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            emit(BIPUSH);
+            emit(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            emit(SIPUSH);
+            emitShort(value);
+        } else {
+            int index = classFile.integer(value);
+            if (index <= 0xFF) {
+                emit(LDC);
+                emit(index);
+            } else {
+                emit(LDC_W);
+                emitShort(index);
+            }
+        }
+    }
+
+    // iload/istore with the short forms for slots 0-3 and wide for slots above 255
+    private void emitLocal(int opcode, int slot) {
+        if (slot <= 3) {
+            emit((opcode == ILOAD ? 0x1a : 0x3b) + slot);
+        } else if (slot <= 0xFF) {
+            emit(opcode);
+            emit(slot);
+        } else {
+            emit(WIDE);
+            emit(opcode);
+            emitShort(slot);
+        }
+    }
+
+    private void emit(int b) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[length++] = (byte) b;
+    }
+
+    private void emitShort(int value) {
+        emit(value >> 8);
+        emit(value);
+    }
+}
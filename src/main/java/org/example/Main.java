@@ -3,6 +3,15 @@ package org.example;
 import program.PseudoAssemblyWithStringProgram;
 
 import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Main Class
@@ -10,39 +19,242 @@ import java.io.*;
  * @author Zachary Ziegler
  */
 public class Main {
+    private static final int CACHE_MEMORY_ENTRIES = 64;
+    private static final long CACHE_DISK_BYTES = 64L * 1024 * 1024;
 
     public static void main(String[] args) {
-        String codeFilePath = "testHighLevel5.txt";
-        StringBuilder codeBuilder = new StringBuilder();
+        String codeFilePath = null;
+        List<Path> batchPaths = new ArrayList<>();
+        boolean batch = false;
+        boolean watch = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String emitFilePath = null;
+        String cacheDirPath = null;
+        boolean printMetrics = false;
+        String metricsFilePath = null;
+        CompilerOptions options = new CompilerOptions();
+        Diagnostics.Level diagnosticsLevel = Diagnostics.Level.ERRORS;
+        boolean registersGiven = false;
+        for (String arg : args) {
+            if (arg.startsWith("--backend=")) {
+                String backend = arg.substring("--backend=".length());
+                try {
+                    options.setBackend(CompilerOptions.Backend.valueOf(backend.toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Unknown backend: " + backend);
+                    printUsage();
+                    return;
+                }
+            } else if (arg.startsWith("--registers=")) {
+                try {
+                    options.setRegisterCount(Integer.parseInt(arg.substring("--registers=".length())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Not a register count: " + arg);
+                    printUsage();
+                    return;
+                }
+                registersGiven = true;
+            } else if (arg.equals("--no-hidden-classes")) {
+                options.setHiddenClasses(false);  // Use a class loader per program instead
+            } else if (arg.equals("--flat-ast")) {
+                options.setFlatAst(true);  // Parse into the compact FlatAst
+            } else if (arg.equals("-O")) {
+                options.enableAllOptimizations();
+            } else if (arg.equals("--fold")) {
+                options.setConstantFolding(true);
+            } else if (arg.equals("--dce")) {
+                options.setDeadCodeElimination(true);
+            } else if (arg.equals("--cse")) {
+                options.setValueNumbering(true);
+            } else if (arg.equals("--peephole")) {
+                options.setPeephole(true);
+            } else if (arg.startsWith("--peephole-skip=")) {
+                for (String rule : arg.substring("--peephole-skip=".length()).split(",")) {
+                    options.disablePeepholeRule(rule);
+                }
+            } else if (arg.startsWith("--cache-dir=")) {
+                cacheDirPath = arg.substring("--cache-dir=".length());  // Reuse earlier compiles of the same source
+            } else if (arg.equals("--batch")) {
+                batch = true;  // Compile every file or directory given, without running them
+            } else if (arg.equals("--watch")) {
+                watch = true;  // Recompile each time the source file is saved
+            } else if (arg.startsWith("--threads=")) {
+                try {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                } catch (NumberFormatException e) {
+                    System.err.println("Not a thread count: " + arg);
+                    printUsage();
+                    return;
+                }
+            } else if (arg.startsWith("--emit=")) {
+                emitFilePath = arg.substring("--emit=".length());  // Stream pseudo assembly to a file
+            } else if (arg.equals("--metrics")) {
+                printMetrics = true;  // Print the time, allocation and counts of each phase
+            } else if (arg.startsWith("--metrics=")) {
+                metricsFilePath = arg.substring("--metrics=".length());  // Write them as JSON
+            } else if (arg.equals("--trace")) {
+                diagnosticsLevel = Diagnostics.Level.TRACE;  // Print every matched token
+            } else if (arg.equals("--quiet")) {
+                diagnosticsLevel = Diagnostics.Level.OFF;
+            } else if (!arg.startsWith("--") && codeFilePath == null) {
+                codeFilePath = arg;
+                batchPaths.add(Path.of(arg));
+            } else if (!arg.startsWith("--") && batch) {
+                batchPaths.add(Path.of(arg));
+            } else {
+                System.err.println("Unknown argument: " + arg);
+                printUsage();
+                return;
+            }
+        }
+        if (codeFilePath == null) {
+            printUsage();
+            return;
+        }
 
-        // Read the high-level language code from file
-        try (BufferedReader br = new BufferedReader(new FileReader(new File(codeFilePath)))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                codeBuilder.append(line).append("\n");
+        if (batch) {
+            batch(batchPaths, options, threads);
+            return;
+        }
+
+        if (watch) {
+            if (options.getBackend() == CompilerOptions.Backend.JVM || options.isConstantFolding()
+                    || options.isValueNumbering()) {
+                System.err.println("--watch generates pseudo assembly and cannot be used with --backend=jvm, --fold or --cse");
+                return;
+            }
+            watch(Path.of(codeFilePath), emitFilePath, options, new ConsoleDiagnostics(diagnosticsLevel));
+            return;
+        }
+
+        if (emitFilePath != null) {
+            // Streaming writes the parser's output as it goes, so no pass can run over it
+            if (registersGiven || options.isConstantFolding() || options.isDeadCodeElimination()
+                    || options.isValueNumbering() || options.isPeephole()) {
+                System.err.println("--emit streams unoptimized pseudo assembly and cannot be used with --registers, -O, --fold, --dce, --cse or --peephole");
+                printUsage();
+                return;
             }
+            emit(codeFilePath, emitFilePath, new ConsoleDiagnostics(diagnosticsLevel));
+            return;
+        }
+
+        CompilerMetrics metrics = new CompilerMetrics();
+        compileAndRun(codeFilePath, cacheDirPath, options, diagnosticsLevel, metrics);
+        if (printMetrics) {
+            System.out.println(metrics);
+        }
+        if (metricsFilePath != null) {
+            try {
+                Files.writeString(Path.of(metricsFilePath), metrics.toJson());
+            } catch (IOException e) {
+                System.err.println("Error writing the metrics: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: Main [--trace | --quiet] [--backend=pseudo|interpreter|jvm] [--no-hidden-classes] [--flat-ast] [-O] [--fold] [--dce] [--cse] [--peephole] [--peephole-skip=<rule,...>] [--registers=<count>] [--cache-dir=<directory>] [--metrics | --metrics=<json file>] <source file>");
+        System.err.println("       Main [--trace | --quiet] --emit=<output file> <source file>");
+        System.err.println("       Main --batch [--threads=<count>] [options] <file or directory>...");
+        System.err.println("       Main --watch [--dce] [--peephole] [--registers=<count>] [--emit=<output file>] <source file>");
+    }
+
+    /**
+     * Reads, compiles and runs one source file, recording each phase in metrics.
+     */
+    private static void compileAndRun(String codeFilePath, String cacheDirPath, CompilerOptions options,
+                                      Diagnostics.Level diagnosticsLevel, CompilerMetrics metrics) {
+        // Read the high-level language code from file
+        CharBuffer highLevelCode;
+        CompilerMetrics.Phase read = metrics.start("read");
+        try {
+            highLevelCode = SourceFiles.read(Path.of(codeFilePath));
+            read.count("chars", highLevelCode.remaining());
         } catch (IOException e) {
             System.err.println("Error reading the file: " + e.getMessage());
             return;
+        } finally {
+            read.end();
         }
 
-        String highLevelCode = codeBuilder.toString();
+        // Skip straight to running when this source was compiled with these options before
+        CompilationCache cache = null;
+        String cacheKey = null;
+        if (cacheDirPath != null) {
+            try {
+                cache = new CompilationCache(CACHE_MEMORY_ENTRIES, Path.of(cacheDirPath), CACHE_DISK_BYTES);
+            } catch (IOException e) {
+                System.err.println("Error opening the compilation cache: " + e.getMessage());
+                return;
+            }
+            cacheKey = CompilationCache.key(highLevelCode, options);
+            CompilationCache.Entry cached = cache.get(cacheKey);
+            if (cached != null) {
+                System.out.println("Compiled program found in cache (" + cacheKey.substring(0, 12) + ").");
+                System.out.println(cache);
+                runCached(cached, options, metrics);
+                return;
+            }
+        }
 
-        // Parse the code using MyParser to generate an AST
-        MyParser parser = new MyParser();
-        boolean parseSuccess = parser.parse(highLevelCode);
-        if (!parseSuccess) {
+        // Parse, optimize and generate code for the chosen backend
+        CompilationResult result = new CompilerSession(options, new ConsoleDiagnostics(diagnosticsLevel)).compile(highLevelCode);
+        metrics.addAll(result.getMetrics());
+        if (!result.isParsed()) {
             System.out.println("Failed to parse the high-level language code.");
             return;
         }
+        if (result.getFoldReport() != null) {
+            System.out.println(result.getFoldReport());
+        }
+        if (!result.isSuccess() && options.getBackend() == CompilerOptions.Backend.JVM) {
+            System.out.println("Failed to generate Java bytecode: " + String.join("\n", result.getErrors()));
+            return;
+        } else if (!result.isSuccess()) {
+            System.err.println(String.join("\n", result.getErrors()));  // Too few registers
+            return;
+        }
 
-        // Generate the pseudo assembly code from the AST
-        AbstractSyntaxTree ast = parser.getAbstractSyntaxTree();
-        String pseudoCode = ast.getCode();
+        if (options.getBackend() == CompilerOptions.Backend.JVM) {
+            JvmBackend.CompiledClass compiled = result.getCompiledClass();
+            System.out.println("Java bytecode generated (" + compiled.getBytes().length + " bytes).");
+            if (cache != null) {
+                cache.put(cacheKey, new CompilationCache.Entry(null, compiled.getBytes()));
+                System.out.println(cache);
+            }
+            runJvm(compiled, options, metrics);
+            return;
+        }
+        if (options.isValueNumbering()) {
+            System.out.println("Value numbering: " + result.getValueNumberingReuses() + " values reused");
+        }
+        if (result.getDeadCodeReport() != null) {
+            System.out.println(result.getDeadCodeReport());
+        }
+        if (result.getPeepholeReport() != null) {
+            System.out.println(result.getPeepholeReport());
+        }
+        String pseudoCode = result.getPseudoCode();
         System.out.println("Pseudo assembly code generated:\n" + pseudoCode);
+        System.out.println(result.getAllocationReport());
+        if (cache != null) {
+            cache.put(cacheKey, new CompilationCache.Entry(pseudoCode, null));
+            System.out.println(cache);
+        }
 
-        // Compile and run the pseudo assembly code
-        int numVirtualRegistersInt = 32;
+        if (options.getBackend() == CompilerOptions.Backend.INTERPRETER) {
+            interpret(result.getProgram(), metrics);
+        } else {
+            runPseudoAssembly(pseudoCode, options, metrics);
+        }
+    }
+
+    /**
+     * Compiles the pseudo assembly to bytecode with PseudoAssemblyObf.jar and runs it.
+     */
+    private static void runPseudoAssembly(String pseudoCode, CompilerOptions options, CompilerMetrics metrics) {
+        int numVirtualRegistersInt = options.getRegisterCount();
         int numVirtualRegistersString = 32;
         String outputClassName = "MyLabProgram";
         String outputPackageNameDot = "mypackage";
@@ -57,23 +269,215 @@ public class Main {
                 numVirtualRegistersString
         );
 
+        CompilerMetrics.Phase parse = metrics.start("pseudo-parse");
         boolean parseSuccessful = pseudoAssemblyProgram.parse();
+        parse.count("chars", pseudoCode.length()).end();
         if (parseSuccessful) {
             System.out.println("Pseudo assembly code parsed successfully.");
 
             // Generate Java bytecode
+            CompilerMetrics.Phase generate = metrics.start("pseudo-bytecode");
             pseudoAssemblyProgram.generateBytecode();
+            generate.end();
             System.out.println("Java bytecode generated.");
 
-            // Run the generated bytecode and show the output
-            try (PrintStream outstream = new PrintStream(System.out)) {
+            // Run the generated bytecode and show the output. Flushed rather than
+            // closed, so System.out stays open for the metrics and cache reports.
+            CompilerMetrics.Phase run = metrics.start("run");
+            PrintStream outstream = new PrintStream(System.out);
+            try {
                 pseudoAssemblyProgram.run(outstream);
             } catch (Exception e) {
                 System.err.println("Error while running the generated bytecode: " + e.getMessage());
+            } finally {
+                outstream.flush();
+                run.end();
             }
         } else {
             System.out.println("Failed to parse the pseudo assembly code.");
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Runs a program taken from the compilation cache on the chosen backend.
+     */
+    private static void runCached(CompilationCache.Entry cached, CompilerOptions options, CompilerMetrics metrics) {
+        if (options.getBackend() == CompilerOptions.Backend.JVM) {
+            runJvm(new JvmBackend.CompiledClass(null, cached.getBytecode()), options, metrics);
+        } else if (options.getBackend() == CompilerOptions.Backend.INTERPRETER) {
+            interpret(PseudoProgram.parse(cached.getPseudoCode()), metrics);
+        } else {
+            runPseudoAssembly(cached.getPseudoCode(), options, metrics);
+        }
+    }
+
+    /**
+     * Loads a class made by JvmBackend and runs it.
+     */
+    private static void runJvm(JvmBackend.CompiledClass compiled, CompilerOptions options, CompilerMetrics metrics) {
+        CompilerMetrics.Phase run = metrics.start("run");
+        try {
+            if (options.isHiddenClasses()) {
+                compiled.runHidden(System.out);
+            } else {
+                compiled.run(System.out);
+            }
+        } catch (Exception e) {
+            System.err.println("Error while running the generated bytecode: " + e.getMessage());
+        } finally {
+            run.end();
+        }
+    }
+
+    /**
+     * Runs the pseudo assembly with the built in interpreter.
+     */
+    private static void interpret(PseudoProgram program, CompilerMetrics metrics) {
+        PseudoInterpreter interpreter;
+        CompilerMetrics.Phase decode = metrics.start("decode");
+        try {
+            interpreter = PseudoInterpreter.decode(program);
+            decode.count("instructions", interpreter.getInstructionCount());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Failed to decode the pseudo assembly code: " + e.getMessage());
+            return;
+        } finally {
+            decode.end();
+        }
+        System.out.println("Pseudo assembly code decoded (" + interpreter.getInstructionCount() + " instructions).");
+        CompilerMetrics.Phase run = metrics.start("run");
+        interpreter.run(System.out);
+        run.end();
+    }
+
+    /**
+     * Compiles every file in parallel and prints the result of each, in the order
+     * given, followed by the timings for the whole batch.
+     */
+    private static void batch(List<Path> paths, CompilerOptions options, int threads) {
+        List<Path> files;
+        try {
+            files = BatchCompiler.expand(paths);
+        } catch (IOException e) {
+            System.err.println("Error listing the files: " + e.getMessage());
+            return;
+        }
+        BatchCompiler.Report report = new BatchCompiler(options, threads).compile(files);
+        for (BatchCompiler.FileResult file : report.getFiles()) {
+            System.out.println(file);
+            for (String error : file.getErrors()) {
+                System.out.println("    " + error);
+            }
+        }
+        System.out.println(report);
+    }
+
+    /**
+     * Compiles the source file, then compiles it again each time it is saved until
+     * the process is stopped. Only the statements around each edit are parsed again.
+     * The code goes to emitFilePath, or to the console when that is null, followed
+     * by the time from noticing the save to the code being written.
+     */
+    private static void watch(Path file, String emitFilePath, CompilerOptions options, Diagnostics diagnostics) {
+        Path watched = file.toAbsolutePath();
+        IncrementalCompiler compiler = new IncrementalCompiler(diagnostics);
+        try (WatchService watcher = watched.getFileSystem().newWatchService()) {
+            // Editors often save by writing a new file and renaming it, so watch for both
+            watched.getParent().register(watcher, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+            recompile(compiler, watched, emitFilePath, options);
+            System.out.println("Watching " + file + " for changes, stop with Ctrl+C.");
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean saved = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (watched.getFileName().equals(event.context())) {
+                        saved = true;
+                    }
+                }
+                if (saved) {
+                    recompile(compiler, watched, emitFilePath, options);
+                }
+                if (!key.reset()) {
+                    System.err.println("Stopped watching, " + watched.getParent() + " is no longer accessible.");
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error watching the file: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Compiles the latest version of a watched file and writes out the code.
+     */
+    private static void recompile(IncrementalCompiler compiler, Path file, String emitFilePath, CompilerOptions options) {
+        long start = System.nanoTime();
+        CharBuffer highLevelCode;
+        try {
+            highLevelCode = SourceFiles.read(file);
+        } catch (IOException e) {
+            System.err.println("Error reading the file: " + e.getMessage());
+            return;
+        }
+        String code;
+        try {
+            code = compiler.compile(highLevelCode);
+        } catch (RuntimeException e) {
+            System.err.println("Error compiling the file: " + e);  // Keep watching, the next save may fix it
+            return;
+        }
+        if (code == null) {
+            System.out.println("Failed to parse the high-level language code.");
+            return;
+        }
+        long compiled = System.nanoTime();
+
+        // The passes after code generation run over the whole program
+        PseudoProgram program = PseudoProgram.parse(code);
+        if (options.isDeadCodeElimination()) {
+            new DeadCodeEliminator().eliminate(program);
+        }
+        try {
+            new RegisterAllocator(options.getRegisterCount()).allocate(program);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());  // Too few registers
+            return;
+        }
+        if (options.isPeephole()) {
+            PeepholeOptimizer.without(options.getDisabledPeepholeRules()).optimize(program);
+        }
+        try {
+            if (emitFilePath != null) {
+                Files.writeString(Path.of(emitFilePath), program.toString());
+            } else {
+                System.out.println("Pseudo assembly code generated:\n" + program);
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing the code: " + e.getMessage());
+            return;
+        }
+        long written = System.nanoTime();
+        System.out.printf("%s. Compiled in %.2f ms, written %.2f ms after the save was seen.%n",
+                compiler, (compiled - start) / 1e6, (written - start) / 1e6);
+    }
+
+    /**
+     * Streams the pseudo assembly for a source file to an output file without
+     * keeping the program in memory, then stops without running it.
+     */
+    private static void emit(String codeFilePath, String emitFilePath, Diagnostics diagnostics) {
+        try (Reader in = Files.newBufferedReader(Path.of(codeFilePath));
+             Writer out = Files.newBufferedWriter(Path.of(emitFilePath))) {
+            if (new MyParser(diagnostics).parse(in, out)) {
+                System.out.println("Pseudo assembly code written to " + emitFilePath);
+            } else {
+                System.out.println("Failed to parse the high-level language code.");
+            }
+        } catch (IOException e) {
+            System.err.println("Error streaming the file: " + e.getMessage());
+        }
+    }
+
+}
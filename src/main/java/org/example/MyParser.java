@@ -1,7 +1,15 @@
 package org.example;
 
 import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -11,10 +19,27 @@ import java.util.Map;
  */
 public class MyParser {
     enum TYPE {INTDATATYPE}
-    Map<String, SymbolTableItem> lookupMap = new HashMap<>();  // Symbol table to track declared variables
+    SymbolTableItem[] declared = new SymbolTableItem[16];  // Symbol table to track declared variables, by symbol ID
     MyScanner scanner;
     MyScanner.TOKEN nextToken;
     private AbstractSyntaxTree abstractSyntaxTree;
+    private final Diagnostics diagnostics;  // Where parse errors and traces are reported
+    private Writer streamOut;  // Set while parsing in streaming mode
+
+    /**
+     * Creates a parser that reports nothing.
+     */
+    public MyParser() {
+        this(Diagnostics.SILENT);
+    }
+
+    /**
+     * Creates a parser that reports errors and traces to the given sink.
+     * @param diagnostics
+     */
+    public MyParser(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
 
     /**
      * Entry point for parsing the program.
@@ -24,24 +49,80 @@ public class MyParser {
      * @return true if parsing was successful, false otherwise.
      */
     public boolean parse(String program) {
+        char[] chars = program.toCharArray();
+        return parse(new MyScanner(chars, 0, chars.length));
+    }
+
+    /**
+     * Parses a program held in a CharBuffer. The scanner reads the buffer in place,
+     * so no String copy of the program is made.
+     *
+     * @param program The input program.
+     * @return true if parsing was successful, false otherwise.
+     */
+    public boolean parse(CharBuffer program) {
+        return parse(new MyScanner(program));
+    }
+
+    /**
+     * Parses a program in streaming mode. Each top-level statement is turned into
+     * pseudo assembly and written to out as soon as it is parsed, then dropped, so
+     * memory use does not grow with the length of the program. The output is the
+     * same as getAbstractSyntaxTree().getCode() would give after a normal parse.
+     * To write to a WritableByteChannel wrap it with Channels.newWriter.
+     *
+     * After a streaming parse the AST root only holds the declarations. If a parse
+     * error occurs, the code for the statements before it has already been written.
+     *
+     * @param program The input program, read one character at a time.
+     * @param out Where the pseudo assembly is written. It is flushed but not closed.
+     * @return true if parsing was successful, false otherwise.
+     */
+    public boolean parse(Reader program, Writer out) {
+        streamOut = out;
         try {
-            // Initialize the AST and scanner
+            return parse(new MyScanner(new PushbackReader(program)));
+        } finally {
+            streamOut = null;
+        }
+    }
+
+    /**
+     * Parses the program read by the given scanner.
+     *
+     * @param scanner Scanner positioned at the start of the program.
+     * @return true if parsing was successful, false otherwise.
+     */
+    boolean parse(MyScanner scanner) {
+        try {
+            // Initialize the AST and scanner, nothing is kept from an earlier parse
             abstractSyntaxTree = new AbstractSyntaxTree();
-            this.scanner = new MyScanner(new PushbackReader(new java.io.StringReader(program)));
+            Arrays.fill(declared, null);
+            this.scanner = scanner;
+            scanner.setSymbolInterner(abstractSyntaxTree.getSymbols());  // IDs are interned as they are scanned
             nextToken = scanner.scan();  // Get the first token
             AbstractSyntaxTree.NodeProgram root = parseProgram();  // Parse the entire program
 
             // If program is successfully parsed and we reached the end of the file
             if (root != null && nextToken == MyScanner.TOKEN.SCANEOF) {
                 abstractSyntaxTree.setRoot(root);  // Set the root of the AST
-                System.out.println("Parse Successful");
+                if (streamOut != null) {
+                    streamOut.flush();
+                }
+                if (diagnostics.isTraceEnabled()) {
+                    diagnostics.trace("Parse Successful");
+                }
                 return true;
             } else {
-                System.out.println("Parse Error: Expected end of program");
+                if (diagnostics.isErrorEnabled()) {
+                    diagnostics.error("Parse Error: Expected end of program");
+                }
                 return false;
             }
         } catch (Exception e) {
-            System.out.println("Parse Error: " + e.getMessage());
+            if (diagnostics.isErrorEnabled()) {
+                diagnostics.error("Parse Error: " + e.getMessage());
+            }
             return false;
         }
     }
@@ -58,6 +139,9 @@ public class MyParser {
      * Parses the <Program> non-terminal, which consists of <Decls> and <Stmts>.
      */
     AbstractSyntaxTree.NodeProgram parseProgram() throws Exception {
+        if (streamOut != null) {
+            return streamProgram();
+        }
         AbstractSyntaxTree.NodeDecls decls = parseDecls();
         AbstractSyntaxTree.NodeStmts stmts = parseStmts();
         if (decls != null && stmts != null) {
@@ -66,6 +150,78 @@ public class MyParser {
         return null;
     }
 
+    /**
+     * Parses the <Program> non-terminal in streaming mode. The code for each top-level
+     * statement is written out right away instead of being kept in the returned node.
+     */
+    AbstractSyntaxTree.NodeProgram streamProgram() throws Exception {
+        AbstractSyntaxTree.NodeDecls decls = parseDecls();
+        if (decls == null) {
+            return null;
+        }
+        abstractSyntaxTree.emitHeader(decls, streamOut);  // .data section and start of .code
+        while (isStmtStart()) {
+            AbstractSyntaxTree.NodeStmt stmt = parseStmt();
+            if (stmt == null) {
+                return null;
+            }
+            abstractSyntaxTree.emitStmt(stmt);  // Write it out and let it go
+        }
+        return abstractSyntaxTree.new NodeProgram(decls, abstractSyntaxTree.new NodeStmts());
+    }
+
+    /**
+     * Parses a run of top-level statements for IncrementalCompiler. The nodes are
+     * made in tree, so they can be generated together with nodes kept from an
+     * earlier parse.
+     *
+     * @param scanner Scanner over the text to parse.
+     * @param tree The AST the new nodes belong to.
+     * @param withDecls Parse declarations first; otherwise the text holds statements only.
+     * @param stmts Receives each top-level statement.
+     * @param starts Receives the offset of the first token of each statement.
+     * @return The declarations (empty without withDecls), or null on a parse error.
+     */
+    AbstractSyntaxTree.NodeDecls parseTopLevel(MyScanner scanner, AbstractSyntaxTree tree, boolean withDecls,
+                                               List<AbstractSyntaxTree.NodeStmt> stmts, List<Integer> starts) {
+        try {
+            abstractSyntaxTree = tree;
+            this.scanner = scanner;
+            scanner.setSymbolInterner(tree.getSymbols());
+            nextToken = scanner.scan();
+            AbstractSyntaxTree.NodeDecls decls;
+            if (withDecls) {
+                Arrays.fill(declared, null);
+                decls = parseDecls();
+                if (decls == null) {
+                    return null;
+                }
+            } else {
+                decls = tree.new NodeDecls();
+            }
+            while (isStmtStart()) {
+                starts.add(scanner.getTokenStart());
+                AbstractSyntaxTree.NodeStmt stmt = parseStmt();
+                if (stmt == null) {
+                    return null;
+                }
+                stmts.add(stmt);
+            }
+            if (nextToken != MyScanner.TOKEN.SCANEOF) {
+                if (diagnostics.isErrorEnabled()) {
+                    diagnostics.error("Parse Error: Expected end of program");
+                }
+                return null;
+            }
+            return decls;
+        } catch (Exception e) {
+            if (diagnostics.isErrorEnabled()) {
+                diagnostics.error("Parse Error: " + e.getMessage());
+            }
+            return null;
+        }
+    }
+
     /**
      * Parses the <Decls> non-terminal.
      */
@@ -87,13 +243,19 @@ public class MyParser {
      */
     AbstractSyntaxTree.NodeId parseDecl() throws Exception {
         if (match(MyScanner.TOKEN.DECLARE)) {
-            String id = scanner.getTokenBufferString();  // Capture the variable name
+            int symbol = scanner.getTokenSymbol();  // Capture the variable's ID
             if (match(MyScanner.TOKEN.ID)) {  // Now match the ID
-                if (!lookupMap.containsKey(id)) {  // Check if variable was already declared
-                    lookupMap.put(id, new SymbolTableItem(id, TYPE.INTDATATYPE));  // Add variable to symbol table
-                    return abstractSyntaxTree.new NodeId(id);
+                if (symbol >= declared.length) {
+                    declared = Arrays.copyOf(declared, Math.max(symbol + 1, declared.length * 2));
+                }
+                if (declared[symbol] == null) {  // Check if variable was already declared
+                    AbstractSyntaxTree.NodeId id = abstractSyntaxTree.new NodeId(symbol);
+                    declared[symbol] = new SymbolTableItem(id.name, TYPE.INTDATATYPE);  // Add variable to symbol table
+                    return id;
                 } else {
-                    System.out.println("Parse Error: Variable '" + id + "' already declared.");
+                    if (diagnostics.isErrorEnabled()) {
+                        diagnostics.error("Parse Error: Variable '" + declared[symbol].name + "' already declared.");
+                    }
                     throw new Exception("Duplicate declaration");
                 }
             }
@@ -103,21 +265,57 @@ public class MyParser {
 
     /**
      * Parses the <Stmts> non-terminal, which represents a series of statements.
-     *
+     * Nested if blocks are parsed in the same loop with a stack of the ifs still
+     * open, so nesting depth does not use up the thread stack.
      */
     AbstractSyntaxTree.NodeStmts parseStmts() throws Exception {
+        Deque<OpenIf> openIfs = new ArrayDeque<>();
         AbstractSyntaxTree.NodeStmts nodeStmts = abstractSyntaxTree.new NodeStmts();
-        // Parse statements as long as the next token is a statement starter
-        while (nextToken == MyScanner.TOKEN.PRINT || nextToken == MyScanner.TOKEN.SET ||
-                nextToken == MyScanner.TOKEN.IF || nextToken == MyScanner.TOKEN.CALC) {
-            AbstractSyntaxTree.NodeStmt stmt = parseStmt();  // Parse individual statement
-            if (stmt != null) {
-                nodeStmts.addStmt(stmt);  // Add statement to the node
-            } else {
-                return null;
+        while (true) {
+            if (nextToken == MyScanner.TOKEN.IF) {
+                OpenIf openIf = parseIfHead(nodeStmts);  // Statements after it go into the if block
+                if (openIf == null) {
+                    return null;
+                }
+                openIfs.push(openIf);
+                nodeStmts = abstractSyntaxTree.new NodeStmts();
+            } else if (isStmtStart()) {
+                AbstractSyntaxTree.NodeStmt stmt = parseStmt();  // Parse individual statement
+                if (stmt != null) {
+                    nodeStmts.addStmt(stmt);  // Add statement to the node
+                } else {
+                    return null;
+                }
+            } else if (openIfs.isEmpty()) {
+                return nodeStmts;  // Return the NodeStmts
+            } else if (match(MyScanner.TOKEN.ENDIF)) {
+                // Close the innermost if and carry on with the statements around it
+                OpenIf openIf = openIfs.pop();
+                openIf.outer.addStmt(abstractSyntaxTree.new NodeIf(openIf.left, openIf.right, nodeStmts));
+                nodeStmts = openIf.outer;
             }
         }
-        return nodeStmts;  // Return the NodeStmts
+    }
+
+    // An if whose block is still being parsed
+    private static class OpenIf {
+        final AbstractSyntaxTree.NodeId left;
+        final AbstractSyntaxTree.NodeId right;
+        final AbstractSyntaxTree.NodeStmts outer;  // Statements the if belongs to
+
+        OpenIf(AbstractSyntaxTree.NodeId left, AbstractSyntaxTree.NodeId right, AbstractSyntaxTree.NodeStmts outer) {
+            this.left = left;
+            this.right = right;
+            this.outer = outer;
+        }
+    }
+
+    /**
+     * Returns true if the next token starts a statement.
+     */
+    boolean isStmtStart() {
+        return nextToken == MyScanner.TOKEN.PRINT || nextToken == MyScanner.TOKEN.SET ||
+                nextToken == MyScanner.TOKEN.IF || nextToken == MyScanner.TOKEN.CALC;
     }
 
     /**
@@ -165,15 +363,27 @@ public class MyParser {
      * Parses an if statement: "if id = id then <Stmts> endif".
      */
     AbstractSyntaxTree.NodeIf parseIfStmt() throws Exception {
+        OpenIf openIf = parseIfHead(null);
+        if (openIf != null) {
+            AbstractSyntaxTree.NodeStmts stmts = parseStmts();  // Parse statements inside the if block
+            if (stmts != null && match(MyScanner.TOKEN.ENDIF)) {
+                return abstractSyntaxTree.new NodeIf(openIf.left, openIf.right, stmts);  // Return NodeIf
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses the start of an if statement: "if id = id then".
+     * @param outer The statements the if belongs to
+     */
+    private OpenIf parseIfHead(AbstractSyntaxTree.NodeStmts outer) throws Exception {
         if (match(MyScanner.TOKEN.IF)) {
             AbstractSyntaxTree.NodeId left = parseId();  // Parse the left-hand side ID
             if (match(MyScanner.TOKEN.EQUALS)) {
                 AbstractSyntaxTree.NodeId right = parseId();  // Parse the right-hand side ID
                 if (match(MyScanner.TOKEN.THEN)) {
-                    AbstractSyntaxTree.NodeStmts stmts = parseStmts();  // Parse statements inside the if block
-                    if (stmts != null && match(MyScanner.TOKEN.ENDIF)) {
-                        return abstractSyntaxTree.new NodeIf(left, right, stmts);  // Return NodeIf
-                    }
+                    return new OpenIf(left, right, outer);
                 }
             }
         }
@@ -195,45 +405,38 @@ public class MyParser {
     }
 
     /**
-     * Parses a sum expression: <Value> <SumEnd>.
+     * Parses a sum expression: <Value> { "+" <Value> }. The terms are read in a
+     * loop and then built into the same right-leaning tree of NodePlus the grammar
+     * <Value> <SumEnd> describes, so long sums do not recurse.
      */
     AbstractSyntaxTree.NodeExpr parseSum() throws Exception {
-        AbstractSyntaxTree.NodeExpr lhs = parseValue();  // Parse the left-hand side value
-        AbstractSyntaxTree.NodeExpr rhs = parseSumEnd(lhs);  // Continue parsing the sum
-        return rhs;  // Return the final expression
-    }
-
-    /**
-     * Parses the rest of the sum expression: "+ <Value> <SumEnd>" or epsilon.
-     */
-    AbstractSyntaxTree.NodeExpr parseSumEnd(AbstractSyntaxTree.NodeExpr lhs) throws Exception {
-        if (nextToken == MyScanner.TOKEN.PLUS) {
+        List<AbstractSyntaxTree.NodeExpr> terms = new ArrayList<>();
+        terms.add(parseValue());  // Parse the left-hand side value
+        while (nextToken == MyScanner.TOKEN.PLUS) {
             match(MyScanner.TOKEN.PLUS);
-            AbstractSyntaxTree.NodeExpr rhs = parseValue();  // Parse the right-hand side value
-            return abstractSyntaxTree.new NodePlus(lhs, parseSumEnd(rhs));  // Return NodePlus
+            terms.add(parseValue());  // Parse the next value
         }
-        return lhs;  // Return the expression if no further sum
+        return abstractSyntaxTree.sumOf(terms);  // Return the final expression
     }
 
     /**
-     * Parses a value, which can be either an ID or an integer literal.
+     * Parses a value, which can be either an ID or an integer literal. Anything
+     * else is a parse error, reported by match as an expected ID.
      */
     AbstractSyntaxTree.NodeExpr parseValue() throws Exception {
-        if (nextToken == MyScanner.TOKEN.ID) {
-            return parseId();  // Parse an identifier
-        } else if (nextToken == MyScanner.TOKEN.INTLITERAL) {
+        if (nextToken == MyScanner.TOKEN.INTLITERAL) {
             return parseIntLiteral();  // Parse an int literal
         }
-        return null;
+        return parseId();  // Parse an identifier
     }
 
     /**
      * Parses an ID.
      */
     AbstractSyntaxTree.NodeId parseId() throws Exception {
-        String id = scanner.getTokenBufferString();  // Capture the identifier
+        int symbol = scanner.getTokenSymbol();  // Capture the identifier's ID
         if (match(MyScanner.TOKEN.ID)) {
-            return abstractSyntaxTree.new NodeId(id);  // Return NodeId
+            return abstractSyntaxTree.new NodeId(symbol);  // Return NodeId
         }
         return null;
     }
@@ -242,20 +445,36 @@ public class MyParser {
      * Parses an integer literal.
      */
     AbstractSyntaxTree.NodeIntLiteral parseIntLiteral() throws Exception {
-        String intLiteral = scanner.getTokenBufferString();  // Capture the int literal
+        int intLiteral = nextToken == MyScanner.TOKEN.INTLITERAL ? scanner.getTokenIntValue() : 0;  // Capture the int literal
         if (match(MyScanner.TOKEN.INTLITERAL)) {
-            return abstractSyntaxTree.new NodeIntLiteral(Integer.parseInt(intLiteral));  // Return NodeIntLiteral
+            return abstractSyntaxTree.new NodeIntLiteral(intLiteral);  // Return NodeIntLiteral
         }
         return null;
     }
 
+    /**
+     * Returns a copy of the symbol table built by the last parse.
+     * @return Variable name -> SymbolTableItem
+     */
+    public Map<String, SymbolTableItem> getSymbolTable() {
+        Map<String, SymbolTableItem> table = new HashMap<>();
+        for (SymbolTableItem item : declared) {
+            if (item != null) {
+                table.put(item.name, item);
+            }
+        }
+        return Map.copyOf(table);
+    }
+
     /**
      * Displays the contents of the symbol table.
      */
     public void displaySymbolTable() {
         System.out.println("Symbol Table:");
-        for (Map.Entry<String, SymbolTableItem> entry : lookupMap.entrySet()) {
-            System.out.println(entry.getValue());
+        for (SymbolTableItem item : declared) {  // In the order the names were first seen
+            if (item != null) {
+                System.out.println(item);
+            }
         }
     }
 
@@ -269,11 +488,15 @@ public class MyParser {
      */
     boolean match(MyScanner.TOKEN expectedToken) throws Exception {
         if (nextToken == expectedToken) {  // Check if the token matches
-            System.out.println("Matched: " + expectedToken + " (" + scanner.getTokenBufferString() + ")");
+            if (diagnostics.isTraceEnabled()) {
+                diagnostics.trace("Matched: " + expectedToken + " (" + scanner.getTokenBufferString() + ")");
+            }
             nextToken = scanner.scan();  // Get the next token
             return true;
         } else {
-            System.out.println("Parse Error: Expected " + expectedToken + " but got " + nextToken);
+            if (diagnostics.isErrorEnabled()) {
+                diagnostics.error("Parse Error: Expected " + expectedToken + " but got " + nextToken);
+            }
             throw new Exception("Unexpected token");
         }
     }
@@ -2,29 +2,79 @@ package org.example;
 
 import java.io.IOException;
 import java.io.PushbackReader;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.nio.CharBuffer;
+import java.util.Arrays;
 
 /**
  * MyScanner Class
+ *
+ * Can read either from a PushbackReader one character at a time, or directly over a
+ * char[] holding the whole source. In the char[] mode every token is just a
+ * (kind, start, length) view into the source and no text is copied until
+ * getTokenBufferString() is called.
  */
 public class MyScanner {
     enum TOKEN {
         SCANEOF, ID, INTLITERAL, INTDATATYPE, DECLARE, PRINT, SET, EQUALS, IF, THEN, ENDIF, CALC, PLUS
     }
 
-    private ArrayList<String> reservedWords;
     private PushbackReader pbr;
-    private StringBuilder buffer = new StringBuilder();
+
+    // Token text lives in text[tokenStart, tokenStart + tokenLength). In char array
+    // mode text is the source itself, in reader mode it is a reusable token buffer.
+    private char[] text;
+    private int tokenStart;
+    private int tokenLength;
+
+    // Char array mode
+    private boolean charArrayMode;
+    private int position;      // Next character to read
+    private int end;           // One past the last readable character
+
+    private int tokenCount;    // Tokens returned so far, not counting SCANEOF
+
+    private SymbolInterner symbols;  // Interns ID tokens as they are scanned, null for none
+    private int tokenSymbol = -1;    // ID of the current ID token, -1 for other tokens
 
     /**
-     * Initializes pbr and reservedWords list.
+     * Initializes pbr.
      * @param pbr
      */
     public MyScanner(PushbackReader pbr) {
-        reservedWords = new ArrayList<>();
-        Collections.addAll(reservedWords, "declare", "int", "print", "set", "if", "then", "endif", "calc");
         this.pbr = pbr;
+        this.text = new char[32];
+    }
+
+    /**
+     * Scans directly over a range of a char array, without copying it.
+     * @param source The array holding the program
+     * @param offset Index of the first character of the program
+     * @param length Number of characters in the program
+     */
+    public MyScanner(char[] source, int offset, int length) {
+        this.charArrayMode = true;
+        this.text = source;
+        this.position = offset;
+        this.end = offset + length;
+        this.tokenStart = offset;
+    }
+
+    /**
+     * Scans directly over the remaining characters of a CharBuffer. Array backed
+     * buffers are used in place, any other buffer is copied once.
+     * @param source
+     */
+    public MyScanner(CharBuffer source) {
+        this(arrayOf(source), source.hasArray() ? source.arrayOffset() + source.position() : 0, source.remaining());
+    }
+
+    private static char[] arrayOf(CharBuffer source) {
+        if (source.hasArray()) {
+            return source.array();
+        }
+        char[] chars = new char[source.remaining()];
+        source.duplicate().get(chars);
+        return chars;
     }
 
     /**
@@ -33,7 +83,45 @@ public class MyScanner {
      * @throws Exception
      */
     public TOKEN scan() throws Exception {
-        buffer.setLength(0);  // Clear the buffer at the start of every token read
+        TOKEN token = charArrayMode ? scanChars() : scanReader();
+        if (token != TOKEN.SCANEOF) {
+            tokenCount++;
+        }
+        tokenSymbol = token == TOKEN.ID && symbols != null ? symbols.intern(text, tokenStart, tokenLength) : -1;
+        return token;
+    }
+
+    /**
+     * Interns every ID token into symbols from the next scan() on, so the parser
+     * can use getTokenSymbol() instead of the token text.
+     * @param symbols
+     */
+    public void setSymbolInterner(SymbolInterner symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Returns the interned ID of the current token if it is an ID and an interner
+     * is set, otherwise -1.
+     * @return int
+     */
+    public int getTokenSymbol() {
+        return tokenSymbol;
+    }
+
+    /**
+     * Returns the number of tokens scanned so far, not counting SCANEOF.
+     * @return int
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Reads the next token from the PushbackReader into the token buffer.
+     */
+    private TOKEN scanReader() throws Exception {
+        tokenLength = 0;  // Clear the buffer at the start of every token read
         int c = pbr.read();
 
         // Skip all whitespace
@@ -42,10 +130,10 @@ public class MyScanner {
         }
 
         if (Character.isDigit(c)) {
-            buffer.append((char) c);
+            append((char) c);
             c = pbr.read();
             while (Character.isDigit(c)) {
-                buffer.append((char) c);
+                append((char) c);
                 c = pbr.read();
             }
             pbr.unread(c);  // Push the last read character back
@@ -55,36 +143,176 @@ public class MyScanner {
         } else if (c == '=') {
             return TOKEN.EQUALS;
         } else if (Character.isLetter(c)) {
-            buffer.append((char) c);
+            append((char) c);
             c = pbr.read();
             while (Character.isLetter(c)) {
-                buffer.append((char) c);
+                append((char) c);
                 c = pbr.read();
             }
             pbr.unread(c);
 
-            String word = buffer.toString();
-
-            // Check if the word matches a reserved keyword
-            if (word.equalsIgnoreCase("declare")) {
-                return TOKEN.DECLARE;
-            } else if (word.equalsIgnoreCase("int")) {
-                return TOKEN.INTDATATYPE;
-            } else if (reservedWords.contains(word.toLowerCase())) {
-                return TOKEN.valueOf(word.toUpperCase());  // Reserved keywords
-            } else {
-                return TOKEN.ID;  // Otherwise, it's an identifier
-            }
+            return keyword(text, 0, tokenLength);  // Reserved keyword or ID
         }
 
         return TOKEN.SCANEOF;
     }
 
+    /**
+     * Appends a character to the reader mode token buffer.
+     */
+    private void append(char c) {
+        if (tokenLength == text.length) {
+            text = Arrays.copyOf(text, text.length * 2);
+        }
+        text[tokenLength++] = c;
+    }
+
+    /**
+     * Same rules as scan(), but reads straight from the source array and only
+     * records where the token starts and how long it is.
+     */
+    private TOKEN scanChars() {
+        int i = position;
+
+        // Skip all whitespace
+        while (i < end && Character.isWhitespace(text[i])) {
+            i++;
+        }
+
+        tokenStart = i;
+        if (i >= end) {
+            tokenLength = 0;
+            position = i;
+            return TOKEN.SCANEOF;
+        }
+
+        char c = text[i];
+        TOKEN token;
+        if (Character.isDigit(c)) {
+            i++;
+            while (i < end && Character.isDigit(text[i])) {
+                i++;
+            }
+            token = TOKEN.INTLITERAL;
+        } else if (c == '+') {
+            i++;
+            token = TOKEN.PLUS;
+        } else if (c == '=') {
+            i++;
+            token = TOKEN.EQUALS;
+        } else if (Character.isLetter(c)) {
+            i++;
+            while (i < end && Character.isLetter(text[i])) {
+                i++;
+            }
+            token = keyword(text, tokenStart, i - tokenStart);
+        } else {
+            // Anything else ends the scan, same as the reader mode
+            tokenLength = 0;
+            position = i;
+            return TOKEN.SCANEOF;
+        }
+
+        tokenLength = i - tokenStart;
+        position = i;
+        // Symbols carry no text, same as the reader mode
+        if (token == TOKEN.PLUS || token == TOKEN.EQUALS) {
+            tokenStart = i;
+            tokenLength = 0;
+        }
+        return token;
+    }
+
+    /**
+     * Classifies a word as a reserved keyword or an ID. Keywords are found with a
+     * switch on the word length and first letter, then compared case-insensitively
+     * in place, so no String is created for the word.
+     * @param chars Array holding the word
+     * @param start Index of the first letter
+     * @param length Number of letters
+     * @return TOKEN
+     */
+    static TOKEN keyword(char[] chars, int start, int length) {
+        switch (length) {
+            case 2:
+                return matches(chars, start, "if") ? TOKEN.IF : TOKEN.ID;
+            case 3:
+                switch (toLower(chars[start])) {
+                    case 'i': return matches(chars, start, "int") ? TOKEN.INTDATATYPE : TOKEN.ID;
+                    case 's': return matches(chars, start, "set") ? TOKEN.SET : TOKEN.ID;
+                    default: return TOKEN.ID;
+                }
+            case 4:
+                switch (toLower(chars[start])) {
+                    case 't': return matches(chars, start, "then") ? TOKEN.THEN : TOKEN.ID;
+                    case 'c': return matches(chars, start, "calc") ? TOKEN.CALC : TOKEN.ID;
+                    default: return TOKEN.ID;
+                }
+            case 5:
+                switch (toLower(chars[start])) {
+                    case 'p': return matches(chars, start, "print") ? TOKEN.PRINT : TOKEN.ID;
+                    case 'e': return matches(chars, start, "endif") ? TOKEN.ENDIF : TOKEN.ID;
+                    default: return TOKEN.ID;
+                }
+            case 7:
+                return matches(chars, start, "declare") ? TOKEN.DECLARE : TOKEN.ID;
+            default:
+                return TOKEN.ID;
+        }
+    }
+
+    /**
+     * Compares chars[start..] against a lower case keyword, ignoring case.
+     */
+    private static boolean matches(char[] chars, int start, String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            if (toLower(chars[start + i]) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char toLower(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Returns the offset of the current token in the source array (0 in reader mode).
+     * @return int
+     */
+    public int getTokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * Returns the length of the current token text.
+     * @return int
+     */
+    public int getTokenLength() {
+        return tokenLength;
+    }
+
+    /**
+     * Parses the current INTLITERAL token without creating a String.
+     * @return int
+     */
+    public int getTokenIntValue() {
+        int value = 0;
+        for (int i = tokenStart; i < tokenStart + tokenLength; i++) {
+            value = Math.multiplyExact(value, 10) + Character.digit(text[i], 10);
+            if (value < 0) {
+                throw new NumberFormatException("Integer literal out of range");
+            }
+        }
+        return value;
+    }
+
     /**
      * Returns the token buffer as a string.
      * @return String
      */
     public String getTokenBufferString() {
-        return buffer.toString();
+        return new String(text, tokenStart, tokenLength);
     }
 }
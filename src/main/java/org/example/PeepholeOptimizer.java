@@ -0,0 +1,387 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PeepholeOptimizer Class
+ *
+ * Rewrites short windows of a PseudoProgram with a list of rules, repeating until
+ * nothing changes. Each rule looks at a bounded number of instructions starting at
+ * the current position, so a pass is linear in the program length. The report
+ * counts how often each rule fired, to show which rewrites pay off.
+ *
+ * Rules that turn add into inc only find work once RegisterAllocator has let a sum
+ * reuse one of its operand registers, so this runs after register allocation.
+ */
+public class PeepholeOptimizer {
+    static final int DEFAULT_MAX_PASSES = 8;
+
+    /**
+     * A rewrite over the instructions starting at a position.
+     */
+    public abstract static class Rule {
+        private final String name;
+        final int window;  // Most instructions the rule looks at
+
+        protected Rule(String name, int window) {
+            this.name = name;
+            this.window = window;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Tries to rewrite code starting at index i.
+         * @return true if the code was changed
+         */
+        abstract boolean apply(List<Instruction> code, int i, Context context);
+    }
+
+    /**
+     * Program wide facts the rules need, kept up to date as they rewrite.
+     */
+    static class Context {
+        private final Map<String, Integer> labelReferences = new HashMap<>();
+
+        Context(List<Instruction> code) {
+            for (Instruction instruction : code) {
+                if (instruction.isBranch()) {
+                    labelReferences.merge(instruction.getLabel(), 1, Integer::sum);
+                }
+            }
+        }
+
+        boolean isReferenced(String label) {
+            return labelReferences.getOrDefault(label, 0) > 0;
+        }
+
+        void removeBranch(Instruction branch) {
+            labelReferences.merge(branch.getLabel(), -1, Integer::sum);
+        }
+    }
+
+    /**
+     * Hit counts per rule.
+     */
+    public static class Report {
+        final Map<String, Integer> hits = new LinkedHashMap<>();
+        int passes;
+        int removedInstructions;
+
+        public Map<String, Integer> getHits() {
+            return hits;
+        }
+
+        public int getPasses() {
+            return passes;
+        }
+
+        public int getRemovedInstructions() {
+            return removedInstructions;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Peephole: " + removedInstructions + " instructions removed in " + passes + " passes");
+            for (Map.Entry<String, Integer> entry : hits.entrySet()) {
+                sb.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+            }
+            return sb.toString();
+        }
+    }
+
+    private final List<Rule> rules;
+    private final int maxPasses;
+
+    /**
+     * Creates an optimizer with every default rule.
+     */
+    public PeepholeOptimizer() {
+        this(defaultRules(), DEFAULT_MAX_PASSES);
+    }
+
+    /**
+     * Creates an optimizer with the given rules, tried in order at each position.
+     * @param rules
+     * @param maxPasses Upper bound on passes over the program
+     */
+    public PeepholeOptimizer(List<Rule> rules, int maxPasses) {
+        this.rules = new ArrayList<>(rules);
+        this.maxPasses = maxPasses;
+    }
+
+    /**
+     * Creates an optimizer with the default rules except those named in skip.
+     * @param skip Names of rules to leave out
+     * @return PeepholeOptimizer
+     */
+    public static PeepholeOptimizer without(Collection<String> skip) {
+        List<Rule> rules = defaultRules();
+        rules.removeIf(rule -> skip.contains(rule.getName()));
+        return new PeepholeOptimizer(rules, DEFAULT_MAX_PASSES);
+    }
+
+    /**
+     * Returns a new list holding one of each built in rule.
+     * @return List of Rule
+     */
+    public static List<Rule> defaultRules() {
+        return new ArrayList<>(Arrays.asList(
+                new RedundantLoad(), new OverwrittenStore(), new AddOneToInc(), new AddZero(),
+                new DeadLiteralLoad(), new BranchToNextLabel(), new UnusedLabel()));
+    }
+
+    /**
+     * Rewrites the program in place until no rule applies or maxPasses is reached.
+     * @param program
+     * @return Report
+     */
+    public Report optimize(PseudoProgram program) {
+        Report report = new Report();
+        for (Rule rule : rules) {
+            report.hits.put(rule.getName(), 0);
+        }
+        int before = program.code.size();
+        boolean changed = true;
+        while (changed && report.passes < maxPasses) {
+            changed = false;
+            report.passes++;
+            Context context = new Context(program.code);
+            for (int i = 0; i < program.code.size(); i++) {
+                for (Rule rule : rules) {
+                    if (i < program.code.size() && rule.apply(program.code, i, context)) {
+                        report.hits.merge(rule.getName(), 1, Integer::sum);
+                        changed = true;
+                    }
+                }
+            }
+        }
+        report.removedInstructions = before - program.code.size();
+        return report;
+    }
+
+    // Helpers shared by the rules
+
+    private static boolean is(Instruction instruction, String opcode) {
+        return instruction.opcode.equals(opcode);
+    }
+
+    private static boolean readsRegister(Instruction instruction, String register) {
+        for (int i = 0; i < instruction.operands.length; i++) {
+            if (instruction.isUse(i) && instruction.operands[i].equals(register)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean writesRegister(Instruction instruction, String register) {
+        int def = instruction.defIndex();
+        return def >= 0 && instruction.operands[def].equals(register);
+    }
+
+    // Built in rules
+
+    /**
+     * storeintvar rX, v followed by loadintvar rX, v: the register already holds v.
+     */
+    static class RedundantLoad extends Rule {
+        RedundantLoad() {
+            super("redundant-load", 2);
+        }
+
+        @Override
+        boolean apply(List<Instruction> code, int i, Context context) {
+            if (i + 1 >= code.size()) {
+                return false;
+            }
+            Instruction store = code.get(i);
+            Instruction load = code.get(i + 1);
+            if (is(store, "storeintvar") && is(load, "loadintvar")
+                    && store.operands[0].equals(load.operands[0]) && store.operands[1].equals(load.operands[1])) {
+                code.remove(i + 1);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A store to v that is stored again before anything reads v or control flow
+     * can leave, within the window.
+     */
+    static class OverwrittenStore extends Rule {
+        OverwrittenStore() {
+            super("overwritten-store", 4);
+        }
+
+        @Override
+        boolean apply(List<Instruction> code, int i, Context context) {
+            Instruction store = code.get(i);
+            if (!is(store, "storeintvar")) {
+                return false;
+            }
+            String variable = store.getVariable();
+            for (int j = i + 1; j < Math.min(code.size(), i + window); j++) {
+                Instruction next = code.get(j);
+                if (next.isBranch() || next.isLabel() || (variable.equals(next.getVariable()) && !is(next, "storeintvar"))) {
+                    return false;
+                }
+                if (is(next, "storeintvar") && variable.equals(next.getVariable())) {
+                    code.remove(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * loadintliteral rT, 1 and then add rT, rA, rA (either operand order) with rT
+     * unchanged in between: the add is inc rA.
+     */
+    static class AddOneToInc extends Rule {
+        AddOneToInc() {
+            super("add-one-to-inc", 4);
+        }
+
+        @Override
+        boolean apply(List<Instruction> code, int i, Context context) {
+            Instruction load = code.get(i);
+            if (!is(load, "loadintliteral") || !load.operands[1].equals("1")) {
+                return false;
+            }
+            String one = load.operands[0];
+            for (int j = i + 1; j < Math.min(code.size(), i + window); j++) {
+                Instruction next = code.get(j);
+                if (is(next, "add")) {
+                    String other = next.operands[0].equals(one) ? next.operands[1]
+                            : next.operands[1].equals(one) ? next.operands[0] : null;
+                    if (other != null && !other.equals(one) && other.equals(next.operands[2])) {
+                        code.set(j, new Instruction("inc", other));
+                        return true;
+                    }
+                }
+                if (next.isLabel() || writesRegister(next, one)) {
+                    return false;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * loadintliteral rZ, 0 and then add rZ, rA, rA (either operand order) with rZ
+     * unchanged in between: the add does nothing.
+     */
+    static class AddZero extends Rule {
+        AddZero() {
+            super("add-zero", 4);
+        }
+
+        @Override
+        boolean apply(List<Instruction> code, int i, Context context) {
+            Instruction load = code.get(i);
+            if (!is(load, "loadintliteral") || !load.operands[1].equals("0")) {
+                return false;
+            }
+            String zero = load.operands[0];
+            for (int j = i + 1; j < Math.min(code.size(), i + window); j++) {
+                Instruction next = code.get(j);
+                if (is(next, "add")) {
+                    String other = next.operands[0].equals(zero) ? next.operands[1]
+                            : next.operands[1].equals(zero) ? next.operands[0] : null;
+                    if (other != null && other.equals(next.operands[2])) {
+                        code.remove(j);
+                        return true;
+                    }
+                }
+                if (next.isLabel() || writesRegister(next, zero)) {
+                    return false;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * loadintliteral rT, n whose register is written again before it is read and
+     * before any branch, within the window.
+     */
+    static class DeadLiteralLoad extends Rule {
+        DeadLiteralLoad() {
+            super("dead-literal-load", 4);
+        }
+
+        @Override
+        boolean apply(List<Instruction> code, int i, Context context) {
+            Instruction load = code.get(i);
+            if (!is(load, "loadintliteral")) {
+                return false;
+            }
+            String register = load.operands[0];
+            for (int j = i + 1; j < Math.min(code.size(), i + window); j++) {
+                Instruction next = code.get(j);
+                if (next.isBranch() || readsRegister(next, register)) {
+                    return false;
+                }
+                if (writesRegister(next, register)) {
+                    code.remove(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A branch straight to the label that follows it.
+     */
+    static class BranchToNextLabel extends Rule {
+        BranchToNextLabel() {
+            super("branch-to-next-label", 2);
+        }
+
+        @Override
+        boolean apply(List<Instruction> code, int i, Context context) {
+            if (i + 1 >= code.size()) {
+                return false;
+            }
+            Instruction branch = code.get(i);
+            Instruction label = code.get(i + 1);
+            if (branch.isBranch() && label.isLabel() && branch.getLabel().equals(label.getLabel())) {
+                context.removeBranch(branch);
+                code.remove(i);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A label no branch jumps to.
+     */
+    static class UnusedLabel extends Rule {
+        UnusedLabel() {
+            super("unused-label", 1);
+        }
+
+        @Override
+        boolean apply(List<Instruction> code, int i, Context context) {
+            Instruction label = code.get(i);
+            if (label.isLabel() && !context.isReferenced(label.getLabel())) {
+                code.remove(i);
+                return true;
+            }
+            return false;
+        }
+    }
+}
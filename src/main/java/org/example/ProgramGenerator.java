@@ -0,0 +1,222 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * ProgramGenerator Class
+ *
+ * Writes random but valid programs for benchmarks and scaling tests. The same seed
+ * and settings always give the same program. Every declared variable is set
+ * before any statement uses it, so the programs also compile and run.
+ *
+ * Run with: java -cp target/classes org.example.ProgramGenerator [--seed=N]
+ * [--declarations=N] [--statements=N] [--chain=N] [--depth=N]
+ * [--mix=set,calc,print,if] [output file]
+ */
+public class ProgramGenerator {
+    private long seed = 1;
+    private int declarations = 10;   // Variables declared, and set once at the top
+    private int statements = 100;    // Statements after the initial sets, counting those inside ifs
+    private int chainLength = 4;     // Terms in every calc sum
+    private int maxDepth = 2;        // Deepest if nesting
+    private int setWeight = 3;       // Relative frequency of each statement kind
+    private int calcWeight = 3;
+    private int printWeight = 2;
+    private int ifWeight = 2;
+
+    private Random random;
+    private int remaining;           // Statements still to write
+
+    /**
+     * Writes a program with the current settings.
+     * @return The program source
+     */
+    public String generate() {
+        StringBuilder sb = new StringBuilder(statements * 16 + declarations * 24);
+        try {
+            generate(sb);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);  // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes a program with the current settings to out, a statement at a time, so
+     * programs bigger than memory can be written to a file.
+     * @param out
+     * @throws IOException if out cannot be written
+     */
+    public void generate(Appendable out) throws IOException {
+        if (declarations < 1) {
+            throw new IllegalArgumentException("At least 1 declaration is needed, got " + declarations);
+        }
+        if (chainLength < 1 || maxDepth < 0 || statements < 0) {
+            throw new IllegalArgumentException("Chain length must be positive, depth and statements not negative");
+        }
+        if (setWeight + calcWeight + printWeight + (maxDepth > 0 ? ifWeight : 0) <= 0) {
+            throw new IllegalArgumentException("At least one statement kind needs a positive weight");
+        }
+        random = new Random(seed);
+        remaining = statements;
+
+        for (int v = 0; v < declarations; v++) {
+            out.append("declare ").append(variable(v)).append('\n');
+        }
+        for (int v = 0; v < declarations; v++) {
+            out.append("set ").append(variable(v)).append(" = ").append(Integer.toString(random.nextInt(100))).append('\n');
+        }
+        while (remaining > 0) {
+            statement(out, 0);
+        }
+    }
+
+    private void statement(Appendable out, int depth) throws IOException {
+        remaining--;
+        int ifs = depth < maxDepth ? ifWeight : 0;
+        int pick = random.nextInt(setWeight + calcWeight + printWeight + ifs);
+        if (pick < setWeight) {
+            out.append("set ").append(randomVariable()).append(" = ").append(Integer.toString(random.nextInt(1000))).append('\n');
+        } else if ((pick -= setWeight) < calcWeight) {
+            out.append("calc ").append(randomVariable()).append(" = ");
+            for (int term = 0; term < chainLength; term++) {
+                if (term > 0) {
+                    out.append(" + ");
+                }
+                if (random.nextInt(3) == 0) {
+                    out.append(Integer.toString(random.nextInt(10)));
+                } else {
+                    out.append(randomVariable());
+                }
+            }
+            out.append('\n');
+        } else if ((pick -= calcWeight) < printWeight) {
+            out.append("print ").append(randomVariable()).append('\n');
+        } else {
+            out.append("if ").append(randomVariable()).append(" = ").append(randomVariable()).append(" then\n");
+            int body = 1 + random.nextInt(4);  // An if body needs at least one statement
+            do {
+                statement(out, depth + 1);
+            } while (--body > 0 && remaining > 0);
+            out.append("endif\n");
+        }
+    }
+
+    private String randomVariable() {
+        return variable(random.nextInt(declarations));
+    }
+
+    /**
+     * Names variable i with letters only, as the scanner requires: va, vb, ..., vz, vba, ...
+     */
+    static String variable(int i) {
+        StringBuilder name = new StringBuilder();
+        do {
+            name.append((char) ('a' + i % 26));
+            i /= 26;
+        } while (i > 0);
+        return name.append('v').reverse().toString();
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public int getDeclarations() {
+        return declarations;
+    }
+
+    public void setDeclarations(int declarations) {
+        this.declarations = declarations;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public void setStatements(int statements) {
+        this.statements = statements;
+    }
+
+    public int getChainLength() {
+        return chainLength;
+    }
+
+    public void setChainLength(int chainLength) {
+        this.chainLength = chainLength;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Sets how often each kind of statement is picked, relative to the others.
+     */
+    public void setMix(int setWeight, int calcWeight, int printWeight, int ifWeight) {
+        this.setWeight = setWeight;
+        this.calcWeight = calcWeight;
+        this.printWeight = printWeight;
+        this.ifWeight = ifWeight;
+    }
+
+    public static void main(String[] args) {
+        ProgramGenerator generator = new ProgramGenerator();
+        String outputPath = null;
+        for (String arg : args) {
+            if (arg.startsWith("--seed=")) {
+                generator.setSeed(Long.parseLong(arg.substring("--seed=".length())));
+            } else if (arg.startsWith("--declarations=")) {
+                generator.setDeclarations(Integer.parseInt(arg.substring("--declarations=".length())));
+            } else if (arg.startsWith("--statements=")) {
+                generator.setStatements(Integer.parseInt(arg.substring("--statements=".length())));
+            } else if (arg.startsWith("--chain=")) {
+                generator.setChainLength(Integer.parseInt(arg.substring("--chain=".length())));
+            } else if (arg.startsWith("--depth=")) {
+                generator.setMaxDepth(Integer.parseInt(arg.substring("--depth=".length())));
+            } else if (arg.startsWith("--mix=")) {
+                String[] weights = arg.substring("--mix=".length()).split(",");
+                if (weights.length != 4) {
+                    System.err.println("--mix needs four weights: set,calc,print,if");
+                    return;
+                }
+                generator.setMix(Integer.parseInt(weights[0]), Integer.parseInt(weights[1]),
+                        Integer.parseInt(weights[2]), Integer.parseInt(weights[3]));
+            } else if (!arg.startsWith("--") && outputPath == null) {
+                outputPath = arg;
+            } else {
+                System.err.println("Unknown argument: " + arg);
+                return;
+            }
+        }
+
+        try {
+            if (outputPath == null) {
+                PrintStream out = System.out;
+                generator.generate(out);
+                out.flush();
+            } else {
+                try (Writer out = Files.newBufferedWriter(Path.of(outputPath))) {
+                    generator.generate(out);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error writing the program: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+}
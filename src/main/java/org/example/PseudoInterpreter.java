@@ -0,0 +1,237 @@
+package org.example;
+
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * PseudoInterpreter Class
+ *
+ * Runs pseudo assembly in process, without PseudoAssemblyObf.jar. The program is
+ * decoded once into an int[] with four slots per instruction (opcode and up to
+ * three operands): registers become indexes into an int[] register file,
+ * variables become slots in an int[] of memory and labels become instruction
+ * offsets. run() is then a single switch loop over that array.
+ */
+public class PseudoInterpreter {
+    static final int WIDTH = 4;  // Slots per decoded instruction
+
+    // Opcodes of the decoded form
+    static final int LOADINTVAR = 0;
+    static final int LOADINTLITERAL = 1;
+    static final int STOREINTVAR = 2;
+    static final int ADD = 3;
+    static final int SUB = 4;
+    static final int MUL = 5;
+    static final int INC = 6;
+    static final int DEC = 7;
+    static final int PRINTI = 8;
+    static final int PRINTVAR = 9;
+    static final int BRANCH = 10;
+    static final int BNE = 11;
+    static final int BE = 12;
+    static final int BGT = 13;
+    static final int BLT = 14;
+
+    private final int[] code;
+    private final int registerCount;
+    private final String[] variables;
+
+    private PseudoInterpreter(int[] code, int registerCount, String[] variables) {
+        this.code = code;
+        this.registerCount = registerCount;
+        this.variables = variables;
+    }
+
+    /**
+     * Decodes pseudo assembly text.
+     * @param text
+     * @return PseudoInterpreter
+     */
+    public static PseudoInterpreter decode(String text) {
+        return decode(PseudoProgram.parse(text));
+    }
+
+    /**
+     * Decodes a program. Labels are resolved to offsets and variables to slots here,
+     * so run() never looks at a String.
+     * @param program
+     * @return PseudoInterpreter
+     * @throws IllegalArgumentException if the program uses an unknown instruction,
+     *                                  an undeclared variable or a missing label
+     */
+    public static PseudoInterpreter decode(PseudoProgram program) {
+        Map<String, Integer> slots = new HashMap<>();
+        for (String variable : program.variables) {
+            slots.putIfAbsent(variable, slots.size());
+        }
+
+        // First pass: the offset of every label is the index of the next instruction
+        List<Instruction> instructions = program.code;
+        Map<String, Integer> labels = new HashMap<>();
+        int count = 0;
+        for (Instruction instruction : instructions) {
+            if (instruction.isLabel()) {
+                labels.put(instruction.getLabel(), count * WIDTH);
+            } else {
+                count++;
+            }
+        }
+
+        int[] code = new int[count * WIDTH];
+        int registers = 0;
+        int pc = 0;
+        for (Instruction instruction : instructions) {
+            if (instruction.isLabel()) {
+                continue;
+            }
+            String[] operands = instruction.operands;
+            int op;
+            switch (instruction.opcode) {
+                case "loadintvar":
+                    op = LOADINTVAR;
+                    code[pc + 1] = register(operands, 0);
+                    code[pc + 2] = slot(operands, 1, slots);
+                    break;
+                case "loadintliteral":
+                    op = LOADINTLITERAL;
+                    code[pc + 1] = register(operands, 0);
+                    code[pc + 2] = Integer.parseInt(operand(operands, 1));
+                    break;
+                case "storeintvar":
+                    op = STOREINTVAR;
+                    code[pc + 1] = register(operands, 0);
+                    code[pc + 2] = slot(operands, 1, slots);
+                    break;
+                case "add":
+                case "sub":
+                case "mul":
+                    op = instruction.opcode.equals("add") ? ADD : instruction.opcode.equals("sub") ? SUB : MUL;
+                    code[pc + 1] = register(operands, 0);
+                    code[pc + 2] = register(operands, 1);
+                    code[pc + 3] = register(operands, 2);
+                    break;
+                case "inc":
+                case "dec":
+                    op = instruction.opcode.equals("inc") ? INC : DEC;
+                    code[pc + 1] = register(operands, 0);
+                    break;
+                case "printi":
+                case "print":
+                    if (Instruction.isRegister(operand(operands, 0))) {
+                        op = PRINTI;
+                        code[pc + 1] = register(operands, 0);
+                    } else {
+                        op = PRINTVAR;
+                        code[pc + 1] = slot(operands, 0, slots);
+                    }
+                    break;
+                case "branch":
+                case "bne":
+                case "be":
+                case "bgt":
+                case "blt":
+                    op = branchOpcode(instruction.opcode);
+                    code[pc + 1] = register(operands, 0);
+                    code[pc + 2] = register(operands, 1);
+                    Integer target = labels.get(operand(operands, 2));
+                    if (target == null) {
+                        throw new IllegalArgumentException("Undefined label: " + instruction);
+                    }
+                    code[pc + 3] = target;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown instruction: " + instruction);
+            }
+            code[pc] = op;
+            for (int i = 0; i < operands.length; i++) {
+                if (Instruction.isRegister(operands[i])) {
+                    registers = Math.max(registers, Integer.parseInt(operands[i].substring(2)) + 1);
+                }
+            }
+            pc += WIDTH;
+        }
+
+        return new PseudoInterpreter(code, registers, program.variables.toArray(new String[0]));
+    }
+
+    private static int branchOpcode(String opcode) {
+        switch (opcode) {
+            case "branch": return BRANCH;
+            case "bne": return BNE;
+            case "be": return BE;
+            case "bgt": return BGT;
+            default: return BLT;
+        }
+    }
+
+    private static String operand(String[] operands, int i) {
+        if (i >= operands.length || operands[i].isEmpty()) {
+            throw new IllegalArgumentException("Missing operand " + (i + 1));
+        }
+        return operands[i];
+    }
+
+    private static int register(String[] operands, int i) {
+        String operand = operand(operands, i);
+        if (!Instruction.isRegister(operand)) {
+            throw new IllegalArgumentException("Not an integer register: " + operand);
+        }
+        return Integer.parseInt(operand.substring(2));
+    }
+
+    private static int slot(String[] operands, int i, Map<String, Integer> slots) {
+        Integer slot = slots.get(operand(operands, i));
+        if (slot == null) {
+            throw new IllegalArgumentException("Undeclared variable: " + operands[i]);
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the number of decoded instructions, not counting labels.
+     * @return int
+     */
+    public int getInstructionCount() {
+        return code.length / WIDTH;
+    }
+
+    /**
+     * Runs the program from the start with all registers and variables at 0.
+     * @param out Where print instructions write, one value per line
+     * @return Number of instructions executed
+     */
+    public long run(PrintStream out) {
+        final int[] code = this.code;
+        final int[] r = new int[registerCount];
+        final int[] memory = new int[variables.length];
+        final int end = code.length;
+        long executed = 0;
+        int pc = 0;
+
+        while (pc < end) {
+            executed++;
+            switch (code[pc]) {
+                case LOADINTVAR: r[code[pc + 1]] = memory[code[pc + 2]]; break;
+                case LOADINTLITERAL: r[code[pc + 1]] = code[pc + 2]; break;
+                case STOREINTVAR: memory[code[pc + 2]] = r[code[pc + 1]]; break;
+                case ADD: r[code[pc + 3]] = r[code[pc + 1]] + r[code[pc + 2]]; break;
+                case SUB: r[code[pc + 3]] = r[code[pc + 1]] - r[code[pc + 2]]; break;
+                case MUL: r[code[pc + 3]] = r[code[pc + 1]] * r[code[pc + 2]]; break;
+                case INC: r[code[pc + 1]]++; break;
+                case DEC: r[code[pc + 1]]--; break;
+                case PRINTI: out.println(r[code[pc + 1]]); break;
+                case PRINTVAR: out.println(memory[code[pc + 1]]); break;
+                case BRANCH: pc = code[pc + 3]; continue;
+                case BNE: if (r[code[pc + 1]] != r[code[pc + 2]]) { pc = code[pc + 3]; continue; } break;
+                case BE: if (r[code[pc + 1]] == r[code[pc + 2]]) { pc = code[pc + 3]; continue; } break;
+                case BGT: if (r[code[pc + 1]] > r[code[pc + 2]]) { pc = code[pc + 3]; continue; } break;
+                case BLT: if (r[code[pc + 1]] < r[code[pc + 2]]) { pc = code[pc + 3]; continue; } break;
+                default: throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc / WIDTH);
+            }
+            pc += WIDTH;
+        }
+        return executed;
+    }
+}
@@ -0,0 +1,80 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PseudoProgram Class
+ *
+ * A pseudo assembly program held as its declared variables and a list of
+ * instructions, so passes can rewrite it before it is turned back into text for
+ * the backend. toString() gives the same layout as AbstractSyntaxTree.getCode().
+ */
+public class PseudoProgram {
+    List<String> variables = new ArrayList<>();   // Names declared with "var int" in .data
+    List<Instruction> code = new ArrayList<>();   // Instructions in .code, in order
+
+    /**
+     * Parses pseudo assembly text. Blank lines and ";" comments are skipped.
+     * @param text
+     * @return PseudoProgram
+     */
+    public static PseudoProgram parse(String text) {
+        PseudoProgram program = new PseudoProgram();
+        boolean inCode = false;
+        for (String line : text.split("\n")) {
+            int comment = line.indexOf(';');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.equals(".data")) {
+                inCode = false;
+            } else if (line.equals(".code")) {
+                inCode = true;
+            } else if (inCode) {
+                program.code.add(Instruction.parse(line));
+            } else if (line.startsWith("var int ")) {
+                program.variables.add(line.substring("var int ".length()).trim());
+            }
+        }
+        return program;
+    }
+
+    /**
+     * Returns a deep copy, so passes run on it leave this program as it is.
+     * @return PseudoProgram
+     */
+    public PseudoProgram copy() {
+        PseudoProgram copy = new PseudoProgram();
+        copy.variables.addAll(variables);
+        for (Instruction instruction : code) {
+            copy.code.add(new Instruction(instruction.opcode, instruction.operands.clone()));
+        }
+        return copy;
+    }
+
+    public List<String> getVariables() {
+        return variables;
+    }
+
+    public List<Instruction> getCode() {
+        return code;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(".data");
+        for (String variable : variables) {
+            sb.append("\nvar int ").append(variable);
+        }
+        sb.append("\n\n.code");
+        for (Instruction instruction : code) {
+            sb.append('\n').append(instruction);
+        }
+        return sb.toString();
+    }
+}
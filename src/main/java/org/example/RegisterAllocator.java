@@ -0,0 +1,250 @@
+package org.example;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * RegisterAllocator Class
+ *
+ * Maps the unbounded ri<N> registers handed out by the code generator onto a fixed
+ * number of integer registers with linear-scan allocation. Values that do not fit
+ * are spilled to extra .data variables and reloaded around each use.
+ *
+ * The code generator only branches forward, so the instruction order is a valid
+ * order for every path and a live range is simply the span from the first to the
+ * last instruction that mentions a register.
+ */
+public class RegisterAllocator {
+    static final String SPILL_PREFIX = "spill";  // Contains digits, so it cannot clash with a source identifier
+    static final int SCRATCH_REGISTERS = 2;      // Enough for the two operands of add/sub/mul/branches
+
+    private final int registerCount;
+
+    /**
+     * @param registerCount Number of integer registers the backend provides. ri0 is
+     *                      left unused, as the code generator numbers from ri1, so
+     *                      registers ri1 to ri(registerCount - 1) are handed out.
+     */
+    public RegisterAllocator(int registerCount) {
+        if (registerCount < SCRATCH_REGISTERS + 2) {
+            throw new IllegalArgumentException("At least " + (SCRATCH_REGISTERS + 2) + " registers are needed, got " + registerCount);
+        }
+        this.registerCount = registerCount;
+    }
+
+    /**
+     * Summary of one allocation.
+     */
+    public static class Report {
+        int virtualRegisters;  // Distinct registers in the input
+        int registersUsed;     // Distinct registers in the output, including scratch registers
+        int spilledValues;     // Live ranges moved to memory
+        int spillLoads;        // loadintvar instructions added
+        int spillStores;       // storeintvar instructions added
+
+        public int getVirtualRegisters() {
+            return virtualRegisters;
+        }
+
+        public int getRegistersUsed() {
+            return registersUsed;
+        }
+
+        public int getSpilledValues() {
+            return spilledValues;
+        }
+
+        public int getSpillLoads() {
+            return spillLoads;
+        }
+
+        public int getSpillStores() {
+            return spillStores;
+        }
+
+        @Override
+        public String toString() {
+            return "Register allocation: " + virtualRegisters + " virtual registers -> " + registersUsed
+                    + " registers, " + spilledValues + " spilled (" + spillLoads + " loads, " + spillStores + " stores)";
+        }
+    }
+
+    // Live range of one virtual register
+    private static class Interval {
+        final String register;
+        final int start;
+        int end;
+        String assigned;      // Physical register, or null if spilled
+        String spillVariable; // Set if the value lives in memory
+
+        Interval(String register, int start) {
+            this.register = register;
+            this.start = start;
+            this.end = start;
+        }
+    }
+
+    /**
+     * Rewrites the program in place so it only uses the configured registers.
+     * @param program
+     * @return Report
+     */
+    public Report allocate(PseudoProgram program) {
+        Map<String, Interval> intervals = liveRanges(program.code);
+        Report report = new Report();
+        report.virtualRegisters = intervals.size();
+
+        // Try without scratch registers first, they are only needed if something spills
+        int available = registerCount - 1;
+        if (!linearScan(intervals, available, program.code)) {
+            linearScan(intervals, available - SCRATCH_REGISTERS, program.code);
+        }
+        rewrite(program, intervals, report);
+        return report;
+    }
+
+    private Map<String, Interval> liveRanges(List<Instruction> code) {
+        Map<String, Interval> intervals = new LinkedHashMap<>();
+        for (int i = 0; i < code.size(); i++) {
+            for (String operand : code.get(i).operands) {
+                if (Instruction.isRegister(operand)) {
+                    Interval interval = intervals.get(operand);
+                    if (interval == null) {
+                        intervals.put(operand, new Interval(operand, i));
+                    } else {
+                        interval.end = i;
+                    }
+                }
+            }
+        }
+        return intervals;
+    }
+
+    /**
+     * Assigns registers ri1..ri(available) to the intervals, spilling the one that
+     * ends furthest away when none is free. Intervals are visited in start order,
+     * which is their insertion order.
+     * @return true if nothing had to be spilled
+     */
+    private boolean linearScan(Map<String, Interval> intervals, int available, List<Instruction> code) {
+        Deque<String> free = new ArrayDeque<>();
+        for (int r = 1; r <= available; r++) {
+            free.add("ri" + r);
+        }
+        PriorityQueue<Interval> active = new PriorityQueue<>(Comparator.comparingInt((Interval iv) -> iv.end));
+        boolean noSpills = true;
+
+        for (Interval current : intervals.values()) {
+            current.assigned = null;
+            current.spillVariable = null;
+
+            // Expire ranges that end at or before this start. A range ending here is only
+            // read by this instruction, so its register can also hold this result.
+            while (!active.isEmpty() && active.peek().end <= current.start) {
+                free.addFirst(active.poll().assigned);
+            }
+
+            if (!free.isEmpty()) {
+                String hint = hint(code.get(current.start), current, intervals);
+                current.assigned = hint != null && free.remove(hint) ? hint : free.poll();
+                active.add(current);
+                continue;
+            }
+
+            noSpills = false;
+            Interval furthest = current;
+            for (Interval candidate : active) {
+                if (candidate.end > furthest.end) {
+                    furthest = candidate;
+                }
+            }
+            if (furthest != current) {
+                current.assigned = furthest.assigned;
+                furthest.assigned = null;
+                active.remove(furthest);
+                active.add(current);
+            }
+        }
+        return noSpills;
+    }
+
+    /**
+     * For "add rA, rB, rC" where rA is last read here, prefers giving rC the register
+     * of rA, so sums like a = a + 1 become add rX, rOne, rX and can later be turned
+     * into inc rX.
+     */
+    private String hint(Instruction instruction, Interval current, Map<String, Interval> intervals) {
+        if (instruction.defIndex() != 2 || !instruction.operands[2].equals(current.register)) {
+            return null;
+        }
+        Interval first = intervals.get(instruction.operands[0]);
+        if (first == null || first.assigned == null || first.end != current.start) {
+            return null;
+        }
+        return first.assigned;
+    }
+
+    private void rewrite(PseudoProgram program, Map<String, Interval> intervals, Report report) {
+        int spillCount = 0;
+        for (Interval interval : intervals.values()) {
+            if (interval.assigned == null) {
+                interval.spillVariable = SPILL_PREFIX + (++spillCount);
+                program.variables.add(interval.spillVariable);
+            }
+        }
+        report.spilledValues = spillCount;
+
+        List<Instruction> out = new ArrayList<>(program.code.size());
+        Set<String> used = new HashSet<>();
+        for (Instruction instruction : program.code) {
+            Map<String, String> scratchFor = new HashMap<>(); // Spilled register -> scratch register in this instruction
+            Instruction store = null;
+            int defIndex = instruction.defIndex();
+
+            for (int i = 0; i < instruction.operands.length; i++) {
+                Interval interval = intervals.get(instruction.operands[i]);
+                if (interval == null) {
+                    continue;
+                }
+                if (interval.spillVariable == null) {
+                    instruction.operands[i] = interval.assigned;
+                    used.add(interval.assigned);
+                    continue;
+                }
+                String scratch = scratchFor.get(interval.register);
+                if (scratch == null) {
+                    // The first spilled operand gets ri(available + 1) and any later one ri(available + 2),
+                    // so a spilled result after two spilled operands reuses the second
+                    scratch = "ri" + (registerCount - SCRATCH_REGISTERS + Math.min(scratchFor.size(), SCRATCH_REGISTERS - 1));
+                    scratchFor.put(interval.register, scratch);
+                    if (instruction.isUse(i) || i != defIndex) {
+                        out.add(new Instruction("loadintvar", scratch, interval.spillVariable));
+                        report.spillLoads++;
+                    }
+                }
+                instruction.operands[i] = scratch;
+                used.add(scratch);
+                if (i == defIndex) {
+                    store = new Instruction("storeintvar", scratch, interval.spillVariable);
+                }
+            }
+
+            out.add(instruction);
+            if (store != null) {
+                out.add(store);
+                report.spillStores++;
+            }
+        }
+        program.code = out;
+        report.registersUsed = used.size();
+    }
+}
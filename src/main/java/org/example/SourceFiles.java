@@ -0,0 +1,53 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * SourceFiles Class
+ *
+ * Loads high-level source files with NIO and decodes them once into a CharBuffer
+ * that MyScanner reads in place.
+ */
+public class SourceFiles {
+
+    // Files at least this big are memory mapped instead of read into a byte array
+    static final long MAP_THRESHOLD = 1 << 16;
+
+    private SourceFiles() {
+    }
+
+    /**
+     * Reads and decodes a UTF-8 source file. Small files are bulk read through the
+     * open channel into a heap buffer, larger ones are mapped with FileChannel.map so
+     * the bytes are decoded straight from the page cache.
+     *
+     * @param path The source file.
+     * @return An array backed CharBuffer holding the whole file.
+     * @throws IOException if the file cannot be read or is not valid UTF-8.
+     */
+    public static CharBuffer read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Source file too large: " + path);
+            }
+            ByteBuffer bytes;
+            if (size < MAP_THRESHOLD) {
+                bytes = ByteBuffer.allocate((int) size);
+                while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                    // Keep reading until the buffer is full or the file ends early
+                }
+                bytes.flip();
+            } else {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            return StandardCharsets.UTF_8.newDecoder().decode(bytes);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * SymbolInterner Class
+ *
+ * Gives every distinct identifier a small int ID: 0 for the first name seen, 1 for
+ * the next, and so on. The symbol table, the register map and code generation
+ * index plain arrays by ID, so a variable is only hashed and compared once, when
+ * the scanner reads it. Names can be interned straight from the scanner's char
+ * array; a String is made only the first time a name is seen, and every later
+ * occurrence shares it.
+ *
+ * Names are compared exactly, so IDs are case-sensitive like variables. Not
+ * thread-safe; each parse has its own.
+ */
+public class SymbolInterner {
+    private String[] names = new String[16];   // ID -> name
+    private int[] hashes = new int[16];        // ID -> hash of the name, so lookups and growing skip most compares
+    private int[] table = new int[32];         // Open addressing, ID + 1 per slot, 0 for empty
+    private int size;
+
+    /**
+     * Returns the ID of the name in chars[start, start + length), adding it if it
+     * is new. Nothing is allocated when the name is already known.
+     * @param chars Array holding the name
+     * @param start Index of the first character
+     * @param length Number of characters
+     * @return int
+     */
+    public int intern(char[] chars, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + chars[i];
+        }
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                return add(new String(chars, start, length), hash, slot);
+            }
+            if (hashes[id] == hash && matches(names[id], chars, start, length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Returns the ID of a name, adding it if it is new.
+     * @param name
+     * @return int
+     */
+    public int intern(String name) {
+        int hash = name.hashCode();  // Same hash as the char[] version
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0) {
+                return add(name, hash, slot);
+            }
+            if (hashes[id] == hash && names[id].equals(name)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Returns the ID of a name, or -1 if it has not been interned.
+     * @param name
+     * @return int
+     */
+    public int find(String name) {
+        int hash = name.hashCode();
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (id < 0 || (hashes[id] == hash && names[id].equals(name))) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Returns the name with the given ID.
+     * @param id
+     * @return String
+     */
+    public String name(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("No symbol with ID " + id);
+        }
+        return names[id];
+    }
+
+    /**
+     * Returns the number of names interned, which is also the next ID.
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    private int add(String name, int hash, int slot) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        names[size] = name;
+        hashes[size] = hash;
+        table[slot] = size + 1;
+        size++;
+        if (size * 2 > table.length) {
+            rehash();  // Keep the table at most half full so probes stay short
+        }
+        return size - 1;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = spread(hashes[id]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+
+    // Mixes the high bits into the low ones, which pick the slot
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean matches(String name, char[] chars, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
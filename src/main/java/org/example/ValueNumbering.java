@@ -0,0 +1,201 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ValueNumbering Class
+ *
+ * Local value numbering table used by AbstractSyntaxTree while it generates code
+ * for NodePlus trees. Since + is commutative and associative, a sum is identified
+ * by the sorted list of its terms, e.g. "#5", "v:x", "v:y" for x + 5 + y. Each
+ * entry remembers the register that already holds that sum, so later sums in the
+ * same basic block can start from it instead of adding the same terms again.
+ * Literals are kept apart from the sums, so each is loaded once per block.
+ *
+ * Both tables are bounded and drop their oldest entries first, and sums are
+ * indexed by term, so a long basic block costs linear time rather than a scan of
+ * everything recorded so far per sum.
+ */
+class ValueNumbering {
+    static final int MAX_SUMS = 256;      // Sums kept per block
+    static final int MAX_LITERALS = 64;   // Literals kept per block
+
+    // A sum that is already in a register
+    static class Entry {
+        final List<String> terms;   // Sorted term keys
+        final int register;
+
+        Entry(List<String> terms, int register) {
+            this.terms = terms;
+            this.register = register;
+        }
+    }
+
+    private final Map<List<String>, Entry> sums = new LinkedHashMap<>();    // Sorted terms -> entry, oldest first
+    private final Map<String, Set<Entry>> sumsByTerm = new HashMap<>();    // Term -> the sums that hold it
+    private final Map<Integer, Integer> literals = new LinkedHashMap<>();  // Value -> register, oldest first
+    private int reused;
+
+    static String variableTerm(String name) {
+        return "v:" + name;
+    }
+
+    static String literalTerm(int value) {
+        return "#" + value;
+    }
+
+    /**
+     * Returns the register holding the literal, or 0 if it has to be loaded.
+     */
+    int lookupLiteral(int value) {
+        Integer register = literals.get(value);
+        if (register != null) {
+            reused++;
+            return register;
+        }
+        return 0;
+    }
+
+    /**
+     * Records that register holds the literal.
+     */
+    void recordLiteral(int value, int register) {
+        literals.put(value, register);
+        if (literals.size() > MAX_LITERALS) {
+            Iterator<Integer> oldest = literals.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Returns the register holding the sum of exactly these sorted terms, or 0 for none.
+     */
+    int lookup(List<String> sortedTerms) {
+        Entry entry = sums.get(sortedTerms);
+        if (entry != null) {
+            reused++;
+            return entry.register;
+        }
+        return 0;
+    }
+
+    /**
+     * Records that register holds the sum of these sorted terms.
+     */
+    void record(List<String> sortedTerms, int register) {
+        List<String> terms = Collections.unmodifiableList(new ArrayList<>(sortedTerms));
+        Entry old = sums.remove(terms);
+        if (old != null) {
+            unindex(old);
+        }
+        Entry entry = new Entry(terms, register);
+        sums.put(terms, entry);
+        for (String term : terms) {
+            sumsByTerm.computeIfAbsent(term, key -> new LinkedHashSet<>()).add(entry);
+        }
+        if (sums.size() > MAX_SUMS) {
+            Iterator<Entry> oldest = sums.values().iterator();
+            Entry dropped = oldest.next();
+            oldest.remove();
+            unindex(dropped);
+        }
+    }
+
+    /**
+     * Returns the entry with the most terms that are all contained in the sorted
+     * terms, or null if no sum of two or more of them is in a register.
+     */
+    Entry largestContained(List<String> sortedTerms) {
+        Entry best = null;
+        String previous = null;
+        for (String term : sortedTerms) {
+            if (term.equals(previous)) {
+                continue;
+            }
+            previous = term;
+            Set<Entry> holding = sumsByTerm.get(term);
+            if (holding == null) {
+                continue;
+            }
+            for (Entry entry : holding) {
+                // Each candidate is looked at once, from its smallest term
+                if (entry.terms.get(0).equals(term) && entry.terms.size() >= 2
+                        && entry.terms.size() <= sortedTerms.size()
+                        && (best == null || entry.terms.size() > best.terms.size())
+                        && containsAll(sortedTerms, entry.terms)) {
+                    best = entry;
+                }
+            }
+        }
+        if (best != null) {
+            reused++;
+        }
+        return best;
+    }
+
+    // Multiset containment over two sorted lists
+    private static boolean containsAll(List<String> terms, List<String> subset) {
+        int i = 0;
+        for (String term : subset) {
+            while (i < terms.size() && terms.get(i).compareTo(term) < 0) {
+                i++;
+            }
+            if (i == terms.size() || !terms.get(i).equals(term)) {
+                return false;
+            }
+            i++;
+        }
+        return true;
+    }
+
+    /**
+     * Forgets every sum that reads the variable, called when it is set or calculated.
+     */
+    void invalidate(String variable) {
+        Set<Entry> stale = sumsByTerm.remove(variableTerm(variable));
+        if (stale != null) {
+            for (Entry entry : stale) {
+                sums.remove(entry.terms);
+                unindex(entry);
+            }
+        }
+    }
+
+    // Removes an entry from the index of each of its terms
+    private void unindex(Entry entry) {
+        for (String term : entry.terms) {
+            Set<Entry> holding = sumsByTerm.get(term);
+            if (holding != null) {
+                holding.remove(entry);
+                if (holding.isEmpty()) {
+                    sumsByTerm.remove(term);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets everything, called at the end of a basic block.
+     */
+    void clear() {
+        sums.clear();
+        sumsByTerm.clear();
+        literals.clear();
+    }
+
+    /**
+     * Returns how many times a register was reused instead of recomputed.
+     */
+    int getReused() {
+        return reused;
+    }
+}
@@ -0,0 +1,110 @@
+package org.example;
+
+import java.util.Arrays;
+
+/**
+ * VariableLocations Class
+ *
+ * Tracks which register holds the current value of each variable while code is
+ * generated, by symbol ID, so a variable is only loaded with loadintvar when no
+ * register has it. Every set and calc also stores to the variable, so memory is
+ * always up to date and a variable can be loaded again at any point.
+ *
+ * The generated code is a chain of basic blocks joined in one way. An if ends the
+ * block it is in with bne. Its body is a block whose only predecessor is that
+ * branch, so the body starts with the state at the branch. The label after the
+ * body starts a block with two predecessors, the branch and the end of the body,
+ * so only the variables in the same register on both edges are kept there. Each
+ * register is written by exactly one instruction, so the same register on both
+ * edges holds the same value.
+ *
+ * Instead of copying the state at every branch, the changes made since each open
+ * branch are kept in an undo log, so an if costs only as much as its body changes.
+ */
+class VariableLocations {
+    private int[] registers = new int[16];  // Symbol ID -> register, 0 for none
+
+    // Changes made inside open if bodies, oldest first
+    private int[] logSymbols = new int[16];
+    private int[] logRegisters = new int[16];  // Register the variable was in before the change
+    private int logSize;
+
+    private int[] branches = new int[8];  // Log size at each open branch, innermost last
+    private int depth;
+
+    /**
+     * Returns the register holding the variable, or 0 if it has to be loaded.
+     */
+    int registerOf(int symbol) {
+        return symbol < registers.length ? registers[symbol] : 0;
+    }
+
+    /**
+     * Records that register now holds the variable, or that no register does for 0.
+     */
+    void set(int symbol, int register) {
+        if (symbol >= registers.length) {
+            registers = Arrays.copyOf(registers, Math.max(symbol + 1, registers.length * 2));
+        }
+        if (registers[symbol] == register) {
+            return;
+        }
+        if (depth > 0) {
+            if (logSize == logSymbols.length) {
+                logSymbols = Arrays.copyOf(logSymbols, logSize * 2);
+                logRegisters = Arrays.copyOf(logRegisters, logSize * 2);
+            }
+            logSymbols[logSize] = symbol;
+            logRegisters[logSize] = registers[symbol];
+            logSize++;
+        }
+        registers[symbol] = register;
+    }
+
+    /**
+     * Called after a conditional branch: the fall through starts a block that
+     * begins with the current state.
+     */
+    void branch() {
+        if (depth == branches.length) {
+            branches = Arrays.copyOf(branches, depth * 2);
+        }
+        branches[depth++] = logSize;
+    }
+
+    /**
+     * Called at the label the innermost open branch jumps to: merges the state at
+     * the end of the body with the state at the branch.
+     */
+    void join() {
+        if (depth == 0) {
+            throw new IllegalStateException("No open branch to join");
+        }
+        int mark = branches[--depth];
+        int changes = logSize - mark;
+        int[] symbols = Arrays.copyOfRange(logSymbols, mark, logSize);
+        int[] atEnd = new int[changes];
+        for (int i = 0; i < changes; i++) {
+            atEnd[i] = registers[symbols[i]];
+        }
+        // Back to the state at the branch, then drop what differs at the end of the body
+        for (int i = logSize - 1; i >= mark; i--) {
+            registers[logSymbols[i]] = logRegisters[i];
+        }
+        logSize = mark;
+        for (int i = 0; i < changes; i++) {
+            if (registers[symbols[i]] != atEnd[i]) {
+                set(symbols[i], 0);  // Logged for the enclosing body, if any
+            }
+        }
+    }
+
+    /**
+     * Forgets every register and open branch, for generating from the start again.
+     */
+    void clear() {
+        Arrays.fill(registers, 0);
+        logSize = 0;
+        depth = 0;
+    }
+}
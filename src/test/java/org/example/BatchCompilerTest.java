@@ -0,0 +1,69 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchCompilerTest {
+
+    @Test
+    void testResultsInInputOrder() {
+        try {
+            Path directory = Files.createTempDirectory("batch");
+            for (int i = 0; i < 50; i++) {
+                Files.writeString(directory.resolve(String.format("p%02d.txt", i)),
+                        "declare x\nset x = " + i + "\nprint x\n");
+            }
+            Files.writeString(directory.resolve("p50.txt"), "declare x\nset x\n");  // Does not parse
+            Files.writeString(directory.resolve("p51.txt"), "declare va\nset va = 1\ncalc va = va +\nprint va\n");  // Dangling +
+
+            List<Path> files = BatchCompiler.expand(List.of(directory));
+            BatchCompiler.Report report = new BatchCompiler(new CompilerOptions(), 4).compile(files);
+
+            assertEquals(52, report.getFiles().size());
+            assertEquals(2, report.getFailures());
+            for (int i = 0; i < 50; i++) {
+                BatchCompiler.FileResult file = report.getFiles().get(i);
+                assertEquals(files.get(i), file.getFile());
+                assertTrue(file.getResult().getPseudoCode().contains("loadintliteral ri1, " + i + "\n"));
+            }
+            assertFalse(report.getFiles().get(50).getErrors().isEmpty());
+            assertFalse(report.getFiles().get(51).getErrors().isEmpty());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void testExceptionFailsOnlyItsFile() {
+        try {
+            Path directory = Files.createTempDirectory("batch");
+            for (int i = 0; i < 3; i++) {
+                Files.writeString(directory.resolve("p" + i + ".txt"), "declare x\nset x = " + i + "\nprint x\n");
+            }
+            Compiler compiler = new Compiler(new CompilerOptions()) {
+                @Override
+                public CompilationResult compile(CharBuffer source) {
+                    if (source.toString().contains("= 1")) {
+                        throw new IllegalStateException("broken");
+                    }
+                    return super.compile(source);
+                }
+            };
+
+            BatchCompiler.Report report = new BatchCompiler(compiler, 2).compile(BatchCompiler.expand(List.of(directory)));
+            assertEquals(3, report.getFiles().size());
+            assertEquals(1, report.getFailures());
+            assertNull(report.getFiles().get(1).getResult());
+            assertTrue(report.getFiles().get(1).getErrors().get(0).contains("broken"));
+            assertTrue(report.getFiles().get(2).isSuccess());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodeEmitterTest {
+
+    @Test
+    void testInstructionLayout() {
+        StringBuilder sb = new StringBuilder();
+        CodeEmitter out = CodeEmitter.of(sb);
+        out.instruction(".data");
+        out.instruction("var int").operand("x");
+        out.instruction("\n.code");
+        out.instruction("loadintliteral").register(1).operand(42);
+        out.instruction("bne").operand("").register(1).labelOperand(6);
+        out.instruction("printi").operand("");
+        out.label(6);
+        assertEquals(".data\nvar int x\n\n.code\nloadintliteral ri1, 42\nbne , ri1, label6\nprinti \n:label6", sb.toString());
+        assertEquals(7, out.getLineCount());
+    }
+
+    @Test
+    void testSinksGiveTheSameCode() {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setStatements(500);
+        generator.setMaxDepth(3);
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(generator.generate()));
+        AbstractSyntaxTree ast = parser.getAbstractSyntaxTree();
+        String code = ast.getCode();
+
+        StringWriter writer = new StringWriter();
+        ast.generateCode(CodeEmitter.of(writer));
+        assertEquals(code, writer.toString());
+
+        CodeEmitter.Bytes bytes = new CodeEmitter.Bytes(16);
+        ast.generateCode(bytes);
+        assertEquals(code, bytes.toString());
+        assertEquals(code.length(), bytes.size());
+
+        // Names outside ASCII are encoded as UTF-8
+        CodeEmitter.Bytes names = new CodeEmitter.Bytes();
+        names.instruction("var int").operand("z\u00e4h");
+        assertEquals("var int z\u00e4h", names.toString());
+        assertEquals("var int z\u00e4h".getBytes(StandardCharsets.UTF_8).length, names.asByteBuffer().remaining());
+    }
+
+    @Test
+    void testWriterErrorsAreUnchecked() {
+        Writer broken = new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        try {
+            CodeEmitter.of(broken).instruction("printi");
+            fail("Expected an UncheckedIOException");
+        } catch (UncheckedIOException e) {
+            assertEquals("disk full", e.getCause().getMessage());
+        }
+    }
+}
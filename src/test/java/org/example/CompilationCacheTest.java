@@ -0,0 +1,66 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilationCacheTest {
+
+    @Test
+    void testKeyDependsOnSourceAndOptions() {
+        CompilerOptions options = new CompilerOptions();
+        String key = CompilationCache.key("declare x\nprint x\n", options);
+        assertEquals(64, key.length());
+        assertEquals(key, CompilationCache.key("declare x\nprint x\n", new CompilerOptions()));
+        assertNotEquals(key, CompilationCache.key("declare y\nprint y\n", options));
+
+        options.setConstantFolding(true);
+        assertNotEquals(key, CompilationCache.key("declare x\nprint x\n", options));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        CompilationCache cache = new CompilationCache(2);
+        cache.put("a", new CompilationCache.Entry("code a", null));
+        cache.put("b", new CompilationCache.Entry("code b", null));
+        assertEquals("code a", cache.get("a").getPseudoCode());  // a is now newer than b
+        cache.put("c", new CompilationCache.Entry("code c", null));
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(3, (int) cache.getHits());
+        assertEquals(1, (int) cache.getMisses());
+        assertEquals(1, (int) cache.getEvictions());
+    }
+
+    @Test
+    void testDiskTier() {
+        try {
+            Path directory = Files.createTempDirectory("cache");
+            CompilationCache first = new CompilationCache(4, directory, 1024);
+            first.put("a", new CompilationCache.Entry("code a", null));
+            first.put("b", new CompilationCache.Entry(null, new byte[] {1, 2, 3}));
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(2, files.count());  // a.pasm and b.class, no temporary files left over
+            }
+
+            // A new cache over the same directory, as in a later run
+            CompilationCache second = new CompilationCache(4, directory, 1024);
+            assertEquals("code a", second.get("a").getPseudoCode());
+            assertEquals(3, second.get("b").getBytecode().length);
+            assertEquals(2, (int) second.getDiskHits());
+
+            // Bigger than the disk limit allows, so older files go
+            second.put("c", new CompilationCache.Entry(null, new byte[1020]));
+            assertTrue(second.getEvictions() > 0);
+            assertTrue(Files.exists(directory.resolve("c.class")));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompilerSessionTest {
+
+    @Test
+    void testNothingCarriesOverBetweenCompiles() {
+        CompilerSession session = new CompilerSession(new CompilerOptions());
+        CompilationResult first = session.compile("declare x\ndeclare y\nset x = 1\nprint x\n");
+        CompilationResult second = session.compile("declare z\nset z = 2\nprint z\n");
+
+        assertTrue(first.isSuccess());
+        assertEquals(2, first.getSymbolTable().size());
+        assertEquals(1, second.getSymbolTable().size());
+        assertTrue(second.getSymbolTable().containsKey("z"));
+        assertEquals(fresh("declare z\nset z = 2\nprint z\n"), second.getPseudoCode());
+    }
+
+    @Test
+    void testParseErrorsAreCollected() {
+        CompilationResult result = new CompilerSession(new CompilerOptions()).compile("declare x\nset x 1\n");
+        assertFalse(result.isSuccess());
+        assertNull(result.getAbstractSyntaxTree());
+        assertFalse(result.getErrors().isEmpty());
+    }
+
+    @Test
+    void testDanglingPlusIsAParseError() {
+        String source = "declare va\nset va = 1\ncalc va = va +\nprint va\n";
+        CompilerOptions folding = new CompilerOptions();
+        folding.setConstantFolding(true);
+        CompilerOptions jvm = new CompilerOptions();
+        jvm.setBackend(CompilerOptions.Backend.JVM);
+        CompilerOptions flat = new CompilerOptions();
+        flat.setFlatAst(true);
+        for (CompilerOptions options : new CompilerOptions[] {new CompilerOptions(), folding, jvm, flat}) {
+            CompilationResult result = new CompilerSession(options).compile(source);
+            assertFalse(result.isParsed());
+            assertFalse(result.getErrors().isEmpty());
+        }
+    }
+
+    @Test
+    void testResultCannotBeChangedThroughGetters() {
+        CompilationResult result = new CompilerSession(new CompilerOptions()).compile("declare x\nset x = 1\nprint x\n");
+        assertTrue(result.isSuccess());
+        String code = result.getPseudoCode();
+        result.getProgram().code.clear();
+        assertEquals(code, result.getProgram().toString());
+        assertThrows(UnsupportedOperationException.class, () -> result.getSymbolTable().remove("x"));
+        assertThrows(UnsupportedOperationException.class, () -> result.getErrors().add("error"));
+    }
+
+    @Test
+    void testSharedCompilerAcrossThreads() {
+        try {
+            Compiler compiler = new Compiler(new CompilerOptions());
+            List<String> sources = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                sources.add("declare x\nset x = " + i + "\ncalc x = x + " + i + "\nprint x\n");
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<CompilationResult>> results = new ArrayList<>();
+                for (String source : sources) {
+                    results.add(pool.submit(() -> compiler.compile(source)));
+                }
+                for (int i = 0; i < sources.size(); i++) {
+                    assertEquals(fresh(sources.get(i)), results.get(i).get().getPseudoCode());
+                }
+            } finally {
+                pool.shutdown();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void testDeepProgramsOnSmallStack() {
+        StringBuilder sb = new StringBuilder("declare x\nset x = 1\ncalc x = x");
+        for (int i = 0; i < 50000; i++) {
+            sb.append(" + 1");
+        }
+        sb.append('\n');
+        for (int i = 0; i < 50000; i++) {
+            sb.append("if x = x then\n");
+        }
+        sb.append("print x\n");
+        for (int i = 0; i < 50000; i++) {
+            sb.append("endif\n");
+        }
+
+        CompilerOptions options = new CompilerOptions();
+        options.enableAllOptimizations();
+        CompilationResult[] results = new CompilationResult[2];
+        Thread thread = new Thread(null, () -> {
+            results[0] = new CompilerSession(new CompilerOptions()).compile(sb.toString());
+            results[1] = new CompilerSession(options).compile(sb.toString());
+        }, "deep", 256 * 1024);
+        thread.start();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        assertTrue(results[0].isSuccess());
+        assertTrue(results[1].isSuccess());
+    }
+
+    // Compiles with a session nobody else has used
+    private static String fresh(String source) {
+        return new CompilerSession(new CompilerOptions()).compile(source).getPseudoCode();
+    }
+
+    @Test
+    void testMetricsPerPhase() {
+        CompilerOptions options = new CompilerOptions();
+        options.setDeadCodeElimination(true);
+        CompilationResult result = new CompilerSession(options).compile("declare a\nset a = 1\ncalc a = a + 2\nprint a\n");
+        assertTrue(result.isSuccess());
+
+        List<String> names = new ArrayList<>();
+        for (CompilerMetrics.Phase phase : result.getMetrics().getPhases()) {
+            names.add(phase.getName());
+            assertTrue(phase.getNanos() >= 0);
+        }
+        assertEquals(List.of("parse", "codegen", "dce", "regalloc"), names);
+        CompilerMetrics.Phase parse = result.getMetrics().getPhases().get(0);
+        assertEquals(14, (long) parse.getCounts().get("tokens"));
+        assertEquals(result.getAbstractSyntaxTree().getNodeCount(), (long) parse.getCounts().get("nodes"));
+        assertEquals(result.getProgram().code.size(),
+                (long) result.getMetrics().getPhases().get(3).getCounts().get("instructions"));
+
+        String json = result.getMetrics().toJson();
+        assertTrue(json.contains("{\"name\": \"parse\", \"nanos\": "));
+        assertTrue(json.contains("\"counts\": {\"tokens\": 14, \"nodes\": "));
+
+        // A failed parse still reports the parse phase
+        result = new CompilerSession(options).compile("declare a\nprint\n");
+        assertFalse(result.isSuccess());
+        assertEquals("parse", result.getMetrics().getPhases().get(0).getName());
+    }
+}
@@ -0,0 +1,48 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstantFolderTest {
+
+    private static AbstractSyntaxTree parse(String source) {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(source));
+        return parser.getAbstractSyntaxTree();
+    }
+
+    @Test
+    void testCalcBecomesSet() {
+        AbstractSyntaxTree ast = parse("declare x\ndeclare y\ndeclare a\nset x = 1\nset y = 2\ncalc a = x + y + 10\nprint a\n");
+        ConstantFolder.Report report = new ConstantFolder().fold(ast);
+
+        assertEquals(1, report.getCalcsToSets()); // calc of known values is a set
+        assertTrue(ast.getCode().contains("loadintliteral ri3, 13")); // 1 + 2 + 10
+        assertFalse(ast.getCode().contains("add")); // no additions left
+    }
+
+    @Test
+    void testPartialFold() {
+        AbstractSyntaxTree ast = parse("declare x\ndeclare y\ndeclare a\nset x = 1\nset y = 2\n"
+                + "if x = y then\nset y = 1\nendif\ncalc a = 4 + y + x + 5\nprint a\n");
+        ConstantFolder.Report report = new ConstantFolder().fold(ast);
+
+        assertEquals(1, report.getDecidedIfs()); // 1 = 2 is false
+        assertEquals(1, report.getRemovedStatements()); // so the block is dropped
+        assertEquals(1, report.getCalcsToSets()); // y is still known to be 2
+        assertTrue(ast.getCode().contains("loadintliteral ri3, 12")); // 4 + 2 + 1 + 5
+    }
+
+    @Test
+    void testUnknownAfterIf() {
+        AbstractSyntaxTree ast = parse("declare x\ndeclare y\ndeclare z\ndeclare a\nset x = 1\nset y = 2\nset a = 7\n"
+                + "if z = y then\nset y = 3\nendif\ncalc a = a + y + 1 + 2\nprint a\n");
+        ConstantFolder.Report report = new ConstantFolder().fold(ast);
+
+        assertEquals(0, report.getDecidedIfs()); // z is unknown
+        assertEquals(1, report.getFoldedCalcs()); // a is known, y is not after the if
+        AbstractSyntaxTree.NodeCalc calc = (AbstractSyntaxTree.NodeCalc) ast.getRoot().stmts.stmts.get(4);
+        assertEquals(2, AbstractSyntaxTree.sumTerms(calc.expr).size()); // y + 10
+    }
+}
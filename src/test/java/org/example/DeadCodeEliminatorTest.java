@@ -0,0 +1,72 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadCodeEliminatorTest {
+
+    private static String eliminate(String code, DeadCodeEliminator.Report[] report) {
+        PseudoProgram program = PseudoProgram.parse(code);
+        report[0] = new DeadCodeEliminator().eliminate(program);
+        return program.toString();
+    }
+
+    @Test
+    void testDeadStore() {
+        DeadCodeEliminator.Report[] report = new DeadCodeEliminator.Report[1];
+        String code = eliminate(".data\nvar int a\n\n.code\n"
+                + "loadintliteral ri1, 5\nstoreintvar ri1, a\n"
+                + "loadintliteral ri2, 6\nstoreintvar ri2, a\nprint a", report);
+
+        assertEquals(".data\nvar int a\n\n.code\nloadintliteral ri2, 6\nstoreintvar ri2, a\nprint a", code);
+        assertEquals(2, report[0].getRemovedInstructions()); // the store a is stored over, and the load feeding it
+        assertEquals(1, report[0].getRemovedStores());
+    }
+
+    @Test
+    void testDeadChainAndDeclarations() {
+        DeadCodeEliminator.Report[] report = new DeadCodeEliminator.Report[1];
+        String code = eliminate(".data\nvar int a\nvar int b\n\n.code\n"
+                + "loadintliteral ri1, 1\nloadintliteral ri2, 2\nadd ri1, ri2, ri3\nstoreintvar ri3, b\n"
+                + "loadintliteral ri4, 7\nprinti ri4", report);
+
+        assertEquals(".data\n\n.code\nloadintliteral ri4, 7\nprinti ri4", code);
+        assertEquals(4, report[0].getRemovedInstructions()); // b is never read, so the whole chain goes
+        assertEquals(1, report[0].getRemovedStores());
+        assertEquals(2, report[0].getRemovedDeclarations());
+    }
+
+    @Test
+    void testStoresThatAreRead() {
+        DeadCodeEliminator.Report[] report = new DeadCodeEliminator.Report[1];
+        String input = ".data\nvar int a\n\n.code\n"
+                + "loadintliteral ri1, 3\nstoreintvar ri1, a\nloadintvar ri2, a\nprinti ri2\n"
+                + "loadintliteral ri3, 4\nstoreintvar ri3, a\nprint a";
+        String code = eliminate(input, report);
+
+        assertEquals(input, code); // each store is read before a is stored again
+        assertEquals(0, report[0].getRemovedInstructions());
+    }
+
+    @Test
+    void testLivenessAcrossBranchesAndLabels() {
+        DeadCodeEliminator.Report[] report = new DeadCodeEliminator.Report[1];
+        String code = eliminate(".data\nvar int a\n\n.code\n"
+                + "loadintliteral ri1, 1\nstoreintvar ri1, a\nloadintliteral ri2, 2\nloadintliteral ri5, 8\n"
+                + "bne ri2, ri2, label9\n"
+                + "loadintliteral ri3, 3\nstoreintvar ri3, a\nloadintliteral ri2, 9\n"
+                + ":label9\n"
+                + "print a\nprinti ri2", report);
+
+        // The first store and ri2 are live where the branch skips the block; only ri5 is dead
+        assertEquals(".data\nvar int a\n\n.code\n"
+                + "loadintliteral ri1, 1\nstoreintvar ri1, a\nloadintliteral ri2, 2\n"
+                + "bne ri2, ri2, label9\n"
+                + "loadintliteral ri3, 3\nstoreintvar ri3, a\nloadintliteral ri2, 9\n"
+                + ":label9\n"
+                + "print a\nprinti ri2", code);
+        assertEquals(1, report[0].getRemovedInstructions());
+        assertEquals(0, report[0].getRemovedStores());
+    }
+}
@@ -0,0 +1,92 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlatAstTest {
+
+    // Code from the flat AST, and from the tree built from it, matches MyParser's tree
+    private static void assertSameCode(String program) {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(program));
+        String expected = parser.getAbstractSyntaxTree().getCode();
+
+        FlatAst flat = new FlatParser().parse(program);
+        assertNotNull(flat);
+        assertEquals(expected, flat.getCode());
+        assertEquals(expected, flat.toAbstractSyntaxTree().getCode());
+        assertEquals(parser.getSymbolTable().keySet(), flat.getSymbolTable().keySet());
+    }
+
+    @Test
+    void testGeneratedPrograms() {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setStatements(300);
+        generator.setMaxDepth(4);
+        for (int seed = 0; seed < 50; seed++) {
+            generator.setSeed(seed);
+            assertSameCode(generator.generate());
+        }
+    }
+
+    @Test
+    void testHighLevelFiles() {
+        try {
+            for (int i = 1; i <= 8; i++) {
+                String program = Files.readString(Path.of("testHighLevel" + i + ".txt"));
+                if (new MyParser().parse(program)) {
+                    assertSameCode(program);
+                } else {
+                    assertNull(new FlatParser().parse(program));
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void testInvalidPrograms() {
+        FlatParser parser = new FlatParser();
+        assertNull(parser.parse("declare a\ndeclare a\n"));
+        assertNull(parser.parse("declare a\nif a = a then\nprint a\n"));
+        assertNull(parser.parse("declare a\ncalc a = a +\n"));
+    }
+
+    @Test
+    void testDanglingPlus() {
+        String[] programs = {
+                "declare a\ncalc a = a +\n",
+                "declare a\nset a = 1\ncalc a = a +\nprint a\n",
+                "declare a\ncalc a = print a\n",
+                "declare a\ncalc a = 1 + + a\n",
+                "declare a\nif a = a then\ncalc a = a +\nendif\n"
+        };
+        for (String program : programs) {
+            assertFalse(new MyParser().parse(program), program);
+            assertNull(new FlatParser().parse(program), program);
+        }
+    }
+
+    @Test
+    void testSessionWithFlatAst() {
+        CompilerOptions options = new CompilerOptions();
+        options.setFlatAst(true);
+        String program = "declare a\ndeclare b\nset a = 2\nset b = 3\ncalc a = a + b + 4\nprint a\n";
+        CompilationResult result = new CompilerSession(options).compile(program);
+        assertTrue(result.isSuccess());
+        assertNotNull(result.getFlatAst());
+        assertNull(result.getAbstractSyntaxTree());
+        assertEquals(new CompilerSession(new CompilerOptions()).compile(program).getPseudoCode(), result.getPseudoCode());
+
+        // Folding needs the object tree, which is built from the flat AST
+        options.setConstantFolding(true);
+        result = new CompilerSession(options).compile(program);
+        assertTrue(result.isSuccess());
+        assertNotNull(result.getAbstractSyntaxTree());
+    }
+}
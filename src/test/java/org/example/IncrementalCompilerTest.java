@@ -0,0 +1,101 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalCompilerTest {
+
+    // The code a full parse gives, or null if the program does not parse
+    private static String fullCompile(String program) {
+        MyParser parser = new MyParser();
+        return parser.parse(program) ? parser.getAbstractSyntaxTree().getCode() : null;
+    }
+
+    @Test
+    void testOneLineEditsReuseTheRest() {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setStatements(1000);
+        generator.setMaxDepth(0);
+        String program = generator.generate();
+        IncrementalCompiler compiler = new IncrementalCompiler();
+        assertEquals(fullCompile(program), compiler.compile(program));
+        assertTrue(compiler.isFullParse());
+        int statements = compiler.getStatementCount();
+
+        // Same shape of code: only the edited statement is parsed, and only the few
+        // statements up to where va and the old variable are next set are generated again
+        int at = program.indexOf("set ", program.length() / 2);
+        int end = program.indexOf('\n', at);
+        String edited = program.substring(0, at) + "set va = 12345" + program.substring(end);
+        assertEquals(fullCompile(edited), compiler.compile(edited));
+        assertFalse(compiler.isFullParse());
+        assertTrue(compiler.getReparsedStatements() <= 3);
+        assertTrue(compiler.getRegeneratedStatements() < statements / 10);
+        assertEquals(statements, compiler.getStatementCount());
+
+        // New statements shift the registers after them, so the rest is generated again but not parsed
+        String inserted = edited.substring(0, at) + "print vb\nset vc = 1\n" + edited.substring(at);
+        assertEquals(fullCompile(inserted), compiler.compile(inserted));
+        assertTrue(compiler.getReparsedStatements() <= 4);
+        assertEquals(statements + 2, compiler.getStatementCount());
+    }
+
+    @Test
+    void testRandomEditsMatchFullCompile() {
+        Random random = new Random(21);
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setStatements(200);
+        generator.setMaxDepth(3);
+        String[] replacements = {"print va", "set vb = 7", "calc va = va + vb + 3", "if va = vb then",
+                "endif", "", "declare vz", "calc vc = 1 + 2", "pri", "set va = ", "!", "calc va = va +"};
+
+        for (int round = 0; round < 20; round++) {
+            generator.setSeed(round);
+            List<String> lines = new ArrayList<>(Arrays.asList(generator.generate().split("\n")));
+            IncrementalCompiler compiler = new IncrementalCompiler();
+            compiler.compile(String.join("\n", lines));
+            for (int edit = 0; edit < 40; edit++) {
+                int line = random.nextInt(lines.size());
+                String replacement = replacements[random.nextInt(replacements.length)];
+                switch (random.nextInt(3)) {
+                    case 0:
+                        lines.set(line, replacement);
+                        break;
+                    case 1:
+                        lines.add(line, replacement);
+                        break;
+                    default:
+                        lines.remove(line);
+                        break;
+                }
+                String program = String.join("\n", lines);
+                assertEquals(fullCompile(program), compiler.compile(program));
+            }
+        }
+    }
+
+    @Test
+    void testUnchangedSourceGeneratesNothing() {
+        String program = "declare a\nset a = 1\nif a = a then\nprint a\nendif\nprint a\n";
+        IncrementalCompiler compiler = new IncrementalCompiler();
+        String code = compiler.compile(program);
+        assertEquals(code, compiler.compile(program));
+        assertEquals(0, compiler.getReparsedStatements());
+        assertEquals(0, compiler.getRegeneratedStatements());
+
+        assertNull(compiler.compile("declare a\nif a = a then\n"));
+        assertNull(compiler.compile("declare a\nset a = 1\ncalc a = a +\nprint a\n"));
+        assertEquals(code, compiler.compile(program));
+        assertTrue(compiler.isFullParse());
+
+        // A half-typed sum in an edited statement does not parse either
+        assertNull(compiler.compile(program + "calc a = a +\n"));
+        assertEquals(code, compiler.compile(program));
+    }
+}
@@ -0,0 +1,74 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JvmBackendTest {
+
+    private static String run(String source) throws Exception {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(source));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new JvmBackend().compile(parser.getAbstractSyntaxTree()).run(new PrintStream(bytes, true));
+        return bytes.toString().replace("\r\n", "\n");
+    }
+
+    @Test
+    void testSameOutputAsInterpreter() {
+        try {
+            Random random = new Random(22);
+            for (int i = 0; i < 100; i++) {
+                String source = PseudoInterpreterTest.randomProgram(random);
+                assertEquals(PseudoInterpreterTest.run(source, new CompilerOptions()), run(source), source);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void testManyVariablesAndLargeLiterals() {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (int v = 0; v < 300; v++) {  // Slots above 255 need the wide form
+                sb.append("declare v").append((char) ('a' + v / 26)).append((char) ('a' + v % 26)).append('\n');
+            }
+            sb.append("set vlm = 2000000000\nset vaa = 40000\ncalc vaa = vaa + vlm + 7\nprint vaa\n");
+
+            assertEquals("2000040007\n", run(sb.toString()));
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void testHiddenClasses() {
+        try {
+            MyParser parser = new MyParser();
+            assertTrue(parser.parse("declare x\nset x = 4\ncalc x = x + 3\nprint x\n"));
+            AbstractSyntaxTree ast = parser.getAbstractSyntaxTree();
+            JvmBackend backend = new JvmBackend();
+            for (int i = 0; i < 2000; i++) {  // Each compile gets its own class, nothing is written to disk
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                backend.compile(ast).runHidden(new PrintStream(bytes, true));
+                assertEquals("7", bytes.toString().trim());
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void testUniqueClassNames() {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse("declare x\nset x = 1\nprint x\n"));
+        JvmBackend backend = new JvmBackend();
+        assertNotEquals(backend.compile(parser.getAbstractSyntaxTree()).getName(),
+                backend.compile(parser.getAbstractSyntaxTree()).getName());
+    }
+}
@@ -0,0 +1,84 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MyParserTest {
+
+    private static String getCode(String program) {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(program));
+        return parser.getAbstractSyntaxTree().getCode();
+    }
+
+    // Accepts limit characters, then fails every write
+    private static class FailingWriter extends Writer {
+        private final StringBuilder written = new StringBuilder();
+        private final int limit;
+
+        FailingWriter(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            if (written.length() + length > limit) {
+                throw new IOException("Disk full");
+            }
+            written.append(buffer, offset, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    void testStreamingMatchesGetCode() {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setStatements(300);
+        generator.setMaxDepth(4);
+        for (int seed = 0; seed < 30; seed++) {
+            generator.setSeed(seed);
+            String program = generator.generate();
+            String expected = getCode(program);
+            assertTrue(expected.contains(":label"));  // Nested ifs, so registers meet at labels
+
+            StringWriter out = new StringWriter();
+            assertTrue(new MyParser().parse(new StringReader(program), out));
+            assertEquals(expected, out.toString());
+        }
+    }
+
+    @Test
+    void testStreamingStopsAtParseError() {
+        String valid = "declare a\ndeclare b\nset a = 1\nif a = b then\nset b = 2\nprint a\nendif\ncalc b = a + b\n";
+        StringWriter out = new StringWriter();
+        assertFalse(new MyParser().parse(new StringReader(valid + "calc a = a +\nprint a\n"), out));
+        assertEquals(getCode(valid), out.toString());  // The statements before the error were written
+    }
+
+    @Test
+    void testStreamingWriteErrorIsAParseFailure() {
+        String program = "declare a\nset a = 1\nprint a\ncalc a = a + 2\nprint a\n";
+        String expected = getCode(program);
+        for (int limit = 0; limit < expected.length(); limit += 7) {
+            FailingWriter out = new FailingWriter(limit);
+            assertFalse(new MyParser().parse(new StringReader(program), out));
+            assertTrue(expected.startsWith(out.written.toString()));
+        }
+        FailingWriter out = new FailingWriter(expected.length());
+        assertTrue(new MyParser().parse(new StringReader(program), out));
+        assertEquals(expected, out.written.toString());
+    }
+}
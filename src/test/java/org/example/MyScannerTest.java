@@ -186,4 +186,62 @@ class MyScannerTest {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testCharArrayMode() {
+        try {
+            char[] source = "calc total = x + 42".toCharArray();
+            MyScanner scanner = new MyScanner(source, 0, source.length);
+
+            MyScanner.TOKEN token = scanner.scan();
+            assertEquals(MyScanner.TOKEN.CALC, token); // test for calc
+
+            token = scanner.scan();
+            assertEquals(MyScanner.TOKEN.ID, token); // test for id
+            assertEquals(5, scanner.getTokenStart()); // test for token offset
+            assertEquals(5, scanner.getTokenLength()); // test for token length
+            assertEquals("total", scanner.getTokenBufferString()); // test for token text
+
+            token = scanner.scan();
+            assertEquals(MyScanner.TOKEN.EQUALS, token); // test for equals
+
+            token = scanner.scan();
+            assertEquals(MyScanner.TOKEN.ID, token); // test for id
+
+            token = scanner.scan();
+            assertEquals(MyScanner.TOKEN.PLUS, token); // test for plus
+
+            token = scanner.scan();
+            assertEquals(MyScanner.TOKEN.INTLITERAL, token); // test for intliteral
+            assertEquals(42, scanner.getTokenIntValue()); // test for literal value
+
+            token = scanner.scan();
+            assertEquals(MyScanner.TOKEN.SCANEOF, token); // test for SCANEOF
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void testKeywordCase() {
+        try {
+            char[] source = "DECLARE Int PrInT sEt IF Then ENDIF Calc ifx inte printer".toCharArray();
+            MyScanner scanner = new MyScanner(source, 0, source.length);
+
+            assertEquals(MyScanner.TOKEN.DECLARE, scanner.scan()); // test for declare
+            assertEquals(MyScanner.TOKEN.INTDATATYPE, scanner.scan()); // test for intdatatype
+            assertEquals(MyScanner.TOKEN.PRINT, scanner.scan()); // test for print
+            assertEquals(MyScanner.TOKEN.SET, scanner.scan()); // test for set
+            assertEquals(MyScanner.TOKEN.IF, scanner.scan()); // test for if
+            assertEquals(MyScanner.TOKEN.THEN, scanner.scan()); // test for then
+            assertEquals(MyScanner.TOKEN.ENDIF, scanner.scan()); // test for endif
+            assertEquals(MyScanner.TOKEN.CALC, scanner.scan()); // test for calc
+            assertEquals(MyScanner.TOKEN.ID, scanner.scan()); // test for id that starts with a keyword
+            assertEquals(MyScanner.TOKEN.ID, scanner.scan()); // test for id that starts with a keyword
+            assertEquals(MyScanner.TOKEN.ID, scanner.scan()); // test for id that starts with a keyword
+            assertEquals(MyScanner.TOKEN.SCANEOF, scanner.scan()); // test for SCANEOF
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeepholeOptimizerTest {
+
+    private static String optimize(String code, PeepholeOptimizer.Report[] report) {
+        PseudoProgram program = PseudoProgram.parse(code);
+        report[0] = new PeepholeOptimizer().optimize(program);
+        return program.toString();
+    }
+
+    @Test
+    void testRedundantLoadAndInc() {
+        PeepholeOptimizer.Report[] report = new PeepholeOptimizer.Report[1];
+        String code = optimize(".data\nvar int a\n\n.code\n"
+                + "loadintliteral ri1, 5\nstoreintvar ri1, a\nloadintvar ri1, a\n"
+                + "loadintliteral ri2, 1\nadd ri1, ri2, ri1\nprinti ri1", report);
+
+        assertEquals(".data\nvar int a\n\n.code\nloadintliteral ri1, 5\nstoreintvar ri1, a\n"
+                + "loadintliteral ri2, 1\ninc ri1\nprinti ri1", code);
+        assertEquals(1, (int) report[0].getHits().get("redundant-load")); // load after store
+        assertEquals(1, (int) report[0].getHits().get("add-one-to-inc")); // add of 1
+    }
+
+    @Test
+    void testBranchesAndLabels() {
+        PeepholeOptimizer.Report[] report = new PeepholeOptimizer.Report[1];
+        String code = optimize(".data\n\n.code\n"
+                + "loadintliteral ri1, 5\nbne ri1, ri1, label3\n:label3\n:label9\nprinti ri1", report);
+
+        assertEquals(".data\n\n.code\nloadintliteral ri1, 5\nprinti ri1", code);
+        assertEquals(1, (int) report[0].getHits().get("branch-to-next-label")); // bne to the next line
+        assertEquals(2, (int) report[0].getHits().get("unused-label")); // neither label is a target any more
+    }
+
+    @Test
+    void testKeepsLiveValues() {
+        String input = ".data\nvar int a\n\n.code\n"
+                + "loadintliteral ri1, 1\nbne ri2, ri3, label5\nloadintliteral ri1, 7\n:label5\n"
+                + "add ri1, ri3, ri3\nstoreintvar ri3, a\nloadintvar ri4, a\nprinti ri4";
+        PseudoProgram program = PseudoProgram.parse(input);
+        PeepholeOptimizer.Report report = PeepholeOptimizer.without(Collections.emptySet()).optimize(program);
+
+        assertEquals(input, program.toString()); // ri1 is not always 1 at the add
+        assertEquals(0, report.getRemovedInstructions());
+    }
+}
@@ -0,0 +1,73 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgramGeneratorTest {
+
+    @Test
+    void testSameSeedSameProgram() {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setSeed(42);
+        String first = generator.generate();
+        assertEquals(first, generator.generate());
+
+        generator.setSeed(43);
+        assertNotEquals(first, generator.generate());
+    }
+
+    @Test
+    void testSettingsAreHonoured() {
+        ProgramGenerator generator = new ProgramGenerator();
+        generator.setDeclarations(30);
+        generator.setStatements(500);
+        generator.setChainLength(7);
+        generator.setMaxDepth(3);
+        String program = generator.generate();
+
+        int statements = 0;
+        int depth = 0;
+        int deepest = 0;
+        for (String line : program.split("\n")) {
+            if (line.startsWith("declare")) {
+                continue;
+            }
+            if (line.equals("endif")) {
+                depth--;
+                continue;
+            }
+            statements++;
+            if (line.startsWith("if ")) {
+                deepest = Math.max(deepest, ++depth);
+            } else if (line.startsWith("calc ")) {
+                assertEquals(6, line.split(" \\+ ").length - 1);
+            }
+        }
+        assertEquals(30 + 500, statements);  // The initial sets, then the generated statements
+        assertEquals(0, depth);
+        assertEquals(3, deepest);
+
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(program));
+        assertEquals(30, parser.getSymbolTable().size());
+    }
+
+    @Test
+    void testProgramsRun() {
+        ProgramGenerator generator = new ProgramGenerator();
+        for (int seed = 0; seed < 20; seed++) {
+            generator.setSeed(seed);
+            CompilationResult result = new CompilerSession(new CompilerOptions()).compile(generator.generate());
+            assertTrue(result.isSuccess());
+            PseudoInterpreter.decode(result.getProgram());  // Labels and variables all resolve
+        }
+    }
+
+    @Test
+    void testVariableNames() {
+        assertEquals("va", ProgramGenerator.variable(0));
+        assertEquals("vz", ProgramGenerator.variable(25));
+        assertEquals("vba", ProgramGenerator.variable(26));
+    }
+}
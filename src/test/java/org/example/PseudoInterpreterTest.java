@@ -0,0 +1,144 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PseudoInterpreterTest {
+
+    // Parses and optimizes like Main does, then runs the result in the interpreter
+    static String run(String source, CompilerOptions options) {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(source));
+        AbstractSyntaxTree ast = parser.getAbstractSyntaxTree();
+        if (options.isConstantFolding()) {
+            new ConstantFolder().fold(ast);
+        }
+        ast.setValueNumbering(options.isValueNumbering());
+        PseudoProgram program = PseudoProgram.parse(ast.getCode());
+        if (options.isDeadCodeElimination()) {
+            new DeadCodeEliminator().eliminate(program);
+        }
+        new RegisterAllocator(options.getRegisterCount()).allocate(program);
+        if (options.isPeephole()) {
+            new PeepholeOptimizer().optimize(program);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PseudoInterpreter.decode(program.toString()).run(new PrintStream(bytes, true));
+        return bytes.toString().replace("\r\n", "\n");
+    }
+
+    private static CompilerOptions optimized(int registers) {
+        CompilerOptions options = new CompilerOptions();
+        options.enableAllOptimizations();
+        options.setRegisterCount(registers);
+        return options;
+    }
+
+    @Test
+    void testHighLevelOne() {
+        try {
+            String source = Files.readString(Path.of("testHighLevel1.txt"));
+            assertEquals("15\n20\n", run(source, new CompilerOptions())); // the if is not taken
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void testBranches() {
+        PseudoInterpreter interpreter = PseudoInterpreter.decode(".data\nvar int a\n\n.code\n"
+                + "loadintliteral ri1, 3\nloadintliteral ri2, 0\n:top\ninc ri2\ndec ri1\nloadintliteral ri3, 0\n"
+                + "bgt ri1, ri3, top\nstoreintvar ri2, a\nprint a");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long executed = interpreter.run(new PrintStream(bytes, true));
+
+        assertEquals("3", bytes.toString().trim()); // the loop ran three times
+        assertEquals(2 + 3 * 4 + 2, executed); // instructions executed, labels excluded
+    }
+
+    @Test
+    void testUndefinedLabel() {
+        assertThrows(IllegalArgumentException.class, () -> PseudoInterpreter.decode(".data\n\n.code\nbne ri1, ri2, nowhere"));
+    }
+
+    @Test
+    void testOptimizationsKeepOutput() {
+        try {
+            for (int i = 1; i <= 8; i++) {
+                String source = Files.readString(Path.of("testHighLevel" + i + ".txt"));
+                String expected = run(source, new CompilerOptions());
+                assertEquals(expected, run(source, optimized(32)), "testHighLevel" + i);
+                assertEquals(expected, run(source, optimized(4)), "testHighLevel" + i + " with 4 registers");
+            }
+            Random random = new Random(345);
+            for (int i = 0; i < 200; i++) {
+                String source = randomProgram(random);
+                String expected = run(source, new CompilerOptions());
+                assertEquals(expected, run(source, optimized(32)), source);
+                assertEquals(expected, run(source, optimized(5)), source);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Random program that sets most variables first, so some are read before they
+    // are set; if blocks hold any statement, so registers differ at the labels
+    static String randomProgram(Random random) {
+        int variables = 2 + random.nextInt(6);
+        StringBuilder sb = new StringBuilder();
+        for (int v = 0; v < variables; v++) {
+            sb.append("declare ").append((char) ('a' + v)).append('\n');
+        }
+        for (int v = 0; v < variables; v++) {
+            if (random.nextInt(4) != 0) {
+                sb.append("set ").append((char) ('a' + v)).append(" = ").append(random.nextInt(4)).append('\n');
+            }
+        }
+        int statements = 5 + random.nextInt(20);
+        for (int s = 0; s < statements; s++) {
+            appendStatement(sb, random, variables, 0);
+        }
+        return sb.toString();
+    }
+
+    private static void appendStatement(StringBuilder sb, Random random, int variables, int depth) {
+        char target = (char) ('a' + random.nextInt(variables));
+        int kind = random.nextInt(4);
+        if (kind == 0 && depth < 3) {
+            sb.append("if ").append((char) ('a' + random.nextInt(variables))).append(" = ")
+                    .append((char) ('a' + random.nextInt(variables))).append(" then\n");
+            int inside = 1 + random.nextInt(3);
+            for (int i = 0; i < inside; i++) {
+                appendStatement(sb, random, variables, depth + 1);
+            }
+            sb.append("endif\n");
+        } else if (kind <= 1) {
+            sb.append("print ").append(target).append('\n');
+        } else if (kind == 2) {
+            sb.append("set ").append(target).append(" = ").append(random.nextInt(3)).append('\n');
+        } else {
+            sb.append("calc ").append(target).append(" = ");
+            int terms = 1 + random.nextInt(5);
+            for (int t = 0; t < terms; t++) {
+                if (t > 0) {
+                    sb.append(" + ");
+                }
+                if (random.nextInt(3) == 0) {
+                    sb.append(random.nextInt(3));
+                } else {
+                    sb.append((char) ('a' + random.nextInt(variables)));
+                }
+            }
+            sb.append('\n');
+        }
+    }
+}
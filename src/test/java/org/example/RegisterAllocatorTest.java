@@ -0,0 +1,79 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegisterAllocatorTest {
+
+    private static final String PROGRAM = "declare w\ndeclare x\ndeclare y\ndeclare z\ndeclare a\n"
+            + "set w = 5\nset x = 1\nset y = 2\nset z = 3\n"
+            + "calc a = x + y + z + x + x + 10 + 20\nprint a\n";
+
+    private static PseudoProgram compile(String source) {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(source));
+        return PseudoProgram.parse(parser.getAbstractSyntaxTree().getCode());
+    }
+
+    private static int highestRegister(PseudoProgram program) {
+        int highest = 0;
+        for (Instruction instruction : program.getCode()) {
+            for (String operand : instruction.getOperands()) {
+                if (Instruction.isRegister(operand)) {
+                    highest = Math.max(highest, Integer.parseInt(operand.substring(2)));
+                }
+            }
+        }
+        return highest;
+    }
+
+    @Test
+    void testFitsWithoutSpilling() {
+        PseudoProgram program = compile(PROGRAM);
+        RegisterAllocator.Report report = new RegisterAllocator(32).allocate(program);
+
+        assertEquals(12, report.getVirtualRegisters()); // one register per literal and sum
+        assertEquals(0, report.getSpilledValues()); // everything fits
+        assertTrue(highestRegister(program) < 32); // within the budget
+        assertEquals(5, program.getVariables().size()); // no spill variables added
+    }
+
+    @Test
+    void testSpillsToData() {
+        PseudoProgram program = compile(PROGRAM);
+        RegisterAllocator.Report report = new RegisterAllocator(4).allocate(program);
+
+        assertTrue(report.getSpilledValues() > 0); // too few registers, so values spill
+        assertTrue(highestRegister(program) < 4); // within the budget
+        assertEquals(5 + report.getSpilledValues(), program.getVariables().size()); // one variable per spill
+        assertTrue(program.getVariables().contains("spill1")); // spill variables are declared
+    }
+
+    private static String run(PseudoProgram program) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PseudoInterpreter.decode(program).run(new PrintStream(bytes, true));
+        return bytes.toString().replace("\r\n", "\n");
+    }
+
+    @Test
+    void testSameOutputAfterAllocation() {
+        String source = "declare b\n" + PROGRAM + "set b = 38\nif a = b then\nset w = 9\nendif\n"
+                + "calc b = a + w + y + z + 1\nprint b\nprint w\n";
+        String expected = run(compile(source));
+        assertEquals("38\n53\n9\n", expected);
+        for (int registers = 4; registers <= 32; registers++) {
+            PseudoProgram program = compile(source);
+            new RegisterAllocator(registers).allocate(program);
+            assertEquals(expected, run(program), registers + " registers"); // spilled or not, the values are the same
+        }
+    }
+
+    @Test
+    void testTooFewRegisters() {
+        assertThrows(IllegalArgumentException.class, () -> new RegisterAllocator(3));
+    }
+}
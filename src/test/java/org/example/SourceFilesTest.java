@@ -0,0 +1,85 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SourceFilesTest {
+
+    // Text of exactly bytes UTF-8 bytes, with two byte characters spread through it
+    private static String text(int bytes) {
+        StringBuilder sb = new StringBuilder();
+        int length = 0;
+        while (length < bytes) {
+            if (length % 100 == 0 && length + 2 <= bytes) {
+                sb.append('\u00e4');
+                length += 2;
+            } else {
+                sb.append(length % 80 == 79 ? '\n' : 'x');
+                length++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void assertReadsBack(int bytes) {
+        try {
+            Path file = Files.createTempFile("source", ".txt");
+            try {
+                String text = text(bytes);
+                Files.writeString(file, text);
+                assertEquals(bytes, Files.size(file));
+                assertEquals(text, SourceFiles.read(file).toString());
+            } finally {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Test
+    void testReadBelowMapThreshold() {
+        assertReadsBack(0);
+        assertReadsBack((int) SourceFiles.MAP_THRESHOLD - 1);  // Read through the channel
+    }
+
+    @Test
+    void testMapAtAndAboveThreshold() {
+        assertReadsBack((int) SourceFiles.MAP_THRESHOLD);      // Memory mapped
+        assertReadsBack((int) SourceFiles.MAP_THRESHOLD + 1);
+    }
+
+    @Test
+    void testInvalidUtf8IsRejected() {
+        try {
+            Path small = Files.createTempFile("source", ".txt");
+            Path large = Files.createTempFile("source", ".txt");
+            try {
+                byte[] bytes = "declare a\n".getBytes(StandardCharsets.UTF_8);
+                byte[] invalid = Arrays.copyOf(bytes, bytes.length + 2);
+                invalid[bytes.length] = (byte) 0xC3;      // Start of a two byte character
+                invalid[bytes.length + 1] = (byte) 0x28;  // but not a continuation byte
+                Files.write(small, invalid);
+                assertThrows(IOException.class, () -> SourceFiles.read(small));
+
+                byte[] big = new byte[(int) SourceFiles.MAP_THRESHOLD + 10];
+                Arrays.fill(big, (byte) 'x');
+                big[big.length - 1] = (byte) 0xFF;        // Never valid in UTF-8
+                Files.write(large, big);
+                assertThrows(IOException.class, () -> SourceFiles.read(large));
+            } finally {
+                Files.delete(small);
+                Files.delete(large);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolInternerTest {
+
+    @Test
+    void testDenseIds() {
+        SymbolInterner symbols = new SymbolInterner();
+        char[] source = "x yy x Yy".toCharArray();
+        assertEquals(0, symbols.intern(source, 0, 1));
+        assertEquals(1, symbols.intern(source, 2, 2));
+        assertEquals(0, symbols.intern(source, 5, 1));
+        assertEquals(2, symbols.intern(source, 7, 2));  // Case-sensitive
+        assertEquals(1, symbols.intern("yy"));
+        assertEquals(3, symbols.size());
+        assertEquals("Yy", symbols.name(2));
+        assertEquals(-1, symbols.find("z"));
+        assertSame(symbols.name(0), symbols.name(symbols.intern(source, 5, 1)));
+
+        // Enough names to grow the table several times
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(3 + i, symbols.intern("v" + i));
+        }
+        for (int i = 0; i < 5000; i++) {
+            char[] name = ("v" + i).toCharArray();
+            assertEquals(3 + i, symbols.intern(name, 0, name.length));
+        }
+        assertEquals(5003, symbols.size());
+    }
+
+    @Test
+    void testParserSharesOneNamePerVariable() {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse("declare a\ndeclare b\nset a = 1\ncalc b = a + a\nprint b\n"));
+        AbstractSyntaxTree ast = parser.getAbstractSyntaxTree();
+        assertEquals(2, ast.getSymbols().size());
+        AbstractSyntaxTree.NodeCalc calc = (AbstractSyntaxTree.NodeCalc) ast.getRoot().stmts.stmts.get(1);
+        AbstractSyntaxTree.NodePlus sum = (AbstractSyntaxTree.NodePlus) calc.expr;
+        assertSame(((AbstractSyntaxTree.NodeId) sum.left).name, ((AbstractSyntaxTree.NodeId) sum.right).name);
+        assertEquals(ast.getSymbols().find("b"), calc.id.symbol);
+        assertEquals(2, parser.getSymbolTable().size());
+
+        assertFalse(parser.parse("declare a\ndeclare b\ndeclare a\n"));
+    }
+}
@@ -0,0 +1,83 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValueNumberingTest {
+    // x = 1, y = 2, a = x + y, with the code for it
+    private static final String PROGRAM_START = "declare x\ndeclare y\ndeclare a\ndeclare b\nset x = 1\nset y = 2\ncalc a = x + y\n";
+    private static final String CODE_START = ".data\nvar int x\nvar int y\nvar int a\nvar int b\n\n.code\n"
+            + "loadintliteral ri1, 1\nstoreintvar ri1, x\nloadintliteral ri2, 2\nstoreintvar ri2, y\n"
+            + "add ri1, ri2, ri3\nstoreintvar ri3, a\n";
+
+    private static AbstractSyntaxTree parse(String program) {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse(program));
+        AbstractSyntaxTree ast = parser.getAbstractSyntaxTree();
+        ast.setValueNumbering(true);
+        return ast;
+    }
+
+    private static String run(String code) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        PseudoInterpreter.decode(code).run(new PrintStream(bytes, true));
+        return bytes.toString().replace("\r\n", "\n");
+    }
+
+    @Test
+    void testGeneratingTwiceGivesTheSameCode() {
+        AbstractSyntaxTree ast = parse("declare x\ndeclare y\ndeclare z\ndeclare a\ndeclare b\n"
+                + "set x = 1\nset y = 2\nset z = 3\ncalc a = x + y + z\ncalc b = x + y + z + 4\nprint a\nprint b\n");
+        String first = ast.getCode();
+        int reuses = ast.getValueNumberingReuses();
+        String second = ast.getCode();
+        assertEquals(first, second);
+        assertEquals(reuses, ast.getValueNumberingReuses());
+        assertEquals("6\n10\n", run(second));
+    }
+
+    @Test
+    void testSumReusedWithinBlock() {
+        AbstractSyntaxTree ast = parse(PROGRAM_START + "calc b = y + x + 3\nprint b\n");
+        String code = ast.getCode();
+        // b starts from ri3, which already holds x + y
+        assertEquals(CODE_START + "loadintliteral ri4, 3\nadd ri3, ri4, ri5\nstoreintvar ri5, b\nprinti ri5", code);
+        assertEquals("6\n", run(code));
+        assertEquals(1, ast.getValueNumberingReuses());
+    }
+
+    @Test
+    void testLiteralLoadedOncePerBlock() {
+        AbstractSyntaxTree ast = parse("declare x\ndeclare a\ndeclare b\nset x = 1\ncalc a = x + 7\ncalc b = a + 7\nprint b\n");
+        String code = ast.getCode();
+        assertEquals(1, code.split("loadintliteral ri\\d+, 7", -1).length - 1);
+        assertEquals("15\n", run(code));
+    }
+
+    @Test
+    void testSumDroppedWhenVariableIsSet() {
+        AbstractSyntaxTree ast = parse(PROGRAM_START + "set x = 5\ncalc b = x + y\nprint b\n");
+        String code = ast.getCode();
+        assertEquals(CODE_START + "loadintliteral ri4, 5\nstoreintvar ri4, x\n"
+                + "add ri4, ri2, ri5\nstoreintvar ri5, b\nprinti ri5", code);
+        assertEquals("7\n", run(code));
+        assertEquals(0, ast.getValueNumberingReuses());
+    }
+
+    @Test
+    void testSumDroppedAtBranchAndLabel() {
+        AbstractSyntaxTree ast = parse(PROGRAM_START + "if x = y then\ncalc b = x + y\nendif\ncalc b = x + y\nprint b\n");
+        String code = ast.getCode();
+        // x + y is added again in the if block and again after its label
+        assertEquals(CODE_START + "bne ri1, ri2, label13\n"
+                + "add ri1, ri2, ri4\nstoreintvar ri4, b\n"
+                + ":label13\n"
+                + "add ri1, ri2, ri5\nstoreintvar ri5, b\nprinti ri5", code);
+        assertEquals("3\n", run(code));
+        assertEquals(0, ast.getValueNumberingReuses());
+    }
+}
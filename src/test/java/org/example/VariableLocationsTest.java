@@ -0,0 +1,53 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VariableLocationsTest {
+
+    @Test
+    void testLoadsOnlyWhenNeeded() {
+        MyParser parser = new MyParser();
+        assertTrue(parser.parse("declare a\ndeclare b\nprint a\nset b = 1\nif a = b then\nset a = 2\nprint b\nendif\n"
+                + "print a\nprint b\n"));
+        // a is loaded before its first use and again after the if, since the body may
+        // have been skipped; b is in ri2 on both edges into the label
+        assertEquals(".data\nvar int a\nvar int b\n\n.code\n"
+                + "loadintvar ri1, a\nprinti ri1\n"
+                + "loadintliteral ri2, 1\nstoreintvar ri2, b\n"
+                + "bne ri1, ri2, label9\n"
+                + "loadintliteral ri3, 2\nstoreintvar ri3, a\nprinti ri2\n"
+                + ":label9\n"
+                + "loadintvar ri4, a\nprinti ri4\nprinti ri2", parser.getAbstractSyntaxTree().getCode());
+    }
+
+    @Test
+    void testNestedJoins() {
+        VariableLocations locations = new VariableLocations();
+        locations.set(0, 1);
+        locations.set(1, 2);
+        locations.branch();
+        locations.set(0, 3);      // Changed in the outer body only
+        locations.branch();
+        locations.set(1, 4);      // Changed in the inner body
+        locations.set(2, 5);      // First set in the inner body
+        locations.join();
+        assertEquals(3, locations.registerOf(0));
+        assertEquals(0, locations.registerOf(1));
+        assertEquals(0, locations.registerOf(2));
+        locations.set(2, 6);
+        locations.join();
+        assertEquals(0, locations.registerOf(0));
+        assertEquals(0, locations.registerOf(1));  // Dropped inside, so dropped after the outer if too
+        assertEquals(0, locations.registerOf(2));
+
+        locations.set(1, 2);
+        locations.branch();
+        locations.set(1, 7);
+        locations.set(1, 2);      // Back in the same register, so it is kept
+        locations.join();
+        assertEquals(2, locations.registerOf(1));
+        assertThrows(IllegalStateException.class, locations::join);
+    }
+}